@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "me.kwilson272"
@@ -18,4 +19,44 @@ repositories {
 dependencies {
     implementation("com.projectkorra:projectkorra:1.12.0")
     compileOnly("org.spigotmc:spigot-api:1.16.5-R0.1-SNAPSHOT")
-}
\ No newline at end of file
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// Tests live in src/test/java and, like the benchmarks, only cover the parts of the plugin
+// that don't need a server
+tasks.test {
+    useJUnitPlatform()
+}
+
+// Benchmarks live in src/jmh/java and only use the parts of the plugin that don't
+// need a server. Run them with ./gradlew jmh
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+}
+
+// Compiles collision files without a server, against an ability list written on the
+// server with /cu export. See OfflineCompiler for the options, for example:
+// ./gradlew compileCollisions --args="--abilities abilities.txt --max-pairs 50000 collisions.txt"
+tasks.register<JavaExec>("compileCollisions") {
+    group = "verification"
+    description = "Compiles and profiles collision files without a server"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("me.kwilson272.collisionutility.offline.OfflineCompiler")
+    workingDir = rootDir
+}
+
+// Replays a recording written on the server with /cu record, comparing an engine against
+// ProjectKorra's checks. See ReplayRunner for the options, for example:
+// ./gradlew replayCollisions --args="--engine spatial --threads 4 recording.bin"
+tasks.register<JavaExec>("replayCollisions") {
+    group = "verification"
+    description = "Replays recorded ability instances through collision detection engines"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("me.kwilson272.collisionutility.offline.ReplayRunner")
+    workingDir = rootDir
+}
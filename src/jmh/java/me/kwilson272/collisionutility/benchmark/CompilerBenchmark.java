@@ -0,0 +1,59 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+import me.kwilson272.collisionutility.compiler.CollisionCompiler;
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.Parser;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures group resolution and pair expansion, which is the part of a load that
+ * grows with how deeply groups are nested and how many members they have.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompilerBenchmark {
+
+    private static final int ABILITIES = 500;
+
+    @Param({"1000", "10000"})
+    public int lines;
+
+    @Param({"0", "2", "4"})
+    public int depth;
+
+    @Param({"4", "16"})
+    public int fanOut;
+
+    private List<Expression> expressions;
+    private AbilitySymbolTable symbols;
+
+    @Setup
+    public void setUp() throws IOException {
+        Logger logger = QuietLogger.create();
+        symbols = StandInAbilities.symbols(ABILITIES);
+        File file = new RuleFileGenerator(ABILITIES, depth, fanOut, 1).write(lines).toFile();
+        expressions = new Parser(new Lexer(file, logger).readTokens()).parseExpressions();
+    }
+
+    @Benchmark
+    public Object compile() {
+        return new CollisionCompiler(symbols).compile(expressions);
+    }
+}
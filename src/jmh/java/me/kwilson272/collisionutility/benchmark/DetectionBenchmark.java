@@ -0,0 +1,69 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.compiler.CollisionCompiler;
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+import me.kwilson272.collisionutility.detection.CollisionDetector;
+import me.kwilson272.collisionutility.detection.ContactList;
+import me.kwilson272.collisionutility.detection.InstanceSnapshot;
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.Parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares a single tick of collision detection between the CollisionManager stand-in
+ * and the spatial hash used by the CollisionEngine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DetectionBenchmark {
+
+    private static final int ABILITIES = 100;
+    private static final double CERTAIN_NO_COLLISION_DISTANCE = 100;
+
+    @Param({"50", "200", "800"})
+    public int instances;
+
+    private StandInCollisionManager manager;
+    private InstanceSnapshot snapshot;
+    private CollisionDetector detector;
+    private ContactList contacts;
+
+    @Setup
+    public void setUp() throws IOException {
+        Logger logger = QuietLogger.create();
+        Parser parser = new Parser(new Lexer(new RuleFileGenerator(ABILITIES, 2, 8, 1).write(2000).toFile(), logger)
+                .readTokens());
+        CollisionTable table = new CollisionCompiler(StandInAbilities.symbols(ABILITIES))
+                .compile(parser.parseExpressions());
+
+        manager = new StandInCollisionManager(table);
+        snapshot = new InstanceSnapshot();
+        manager.populate(snapshot, instances, 40, 200, 1);
+        detector = new CollisionDetector(8);
+        contacts = new ContactList();
+    }
+
+    @Benchmark
+    public int collisionManager() {
+        return manager.detectCollisions(snapshot, CERTAIN_NO_COLLISION_DISTANCE);
+    }
+
+    @Benchmark
+    public int spatialHash() {
+        detector.detect(snapshot, manager.getRules(), CERTAIN_NO_COLLISION_DISTANCE, contacts);
+        return contacts.size();
+    }
+}
@@ -0,0 +1,62 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.parser.CompactLexer;
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.TokenSource;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures how long it takes to turn a collision file into tokens, with each lexer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LexerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private File file;
+    private Logger logger;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = new RuleFileGenerator(500, 3, 8, 1).write(lines).toFile();
+        logger = QuietLogger.create();
+    }
+
+    @Benchmark
+    public Object readTokens() {
+        return new Lexer(file, logger).readTokens();
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        try (TokenSource tokens = new Lexer(file, logger).stream()) {
+            while (tokens.type() != TokenType.EOF) {
+                blackhole.consume(tokens.literal());
+                tokens.advance();
+            }
+        }
+    }
+
+    @Benchmark
+    public Object compact() {
+        return new CompactLexer(file, logger).readTokens();
+    }
+}
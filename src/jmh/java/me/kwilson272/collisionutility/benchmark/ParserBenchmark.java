@@ -0,0 +1,63 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.Parser;
+import me.kwilson272.collisionutility.parser.token.Token;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to parse an already lexed collision file.
+ *<p>
+ * A share of the lines can have their operator replaced by a name, so that files full
+ * of errors can be compared against clean ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"0", "50"})
+    public int invalidPercent;
+
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Token> lexed = new Lexer(new RuleFileGenerator(500, 3, 8, 1).write(lines).toFile(), QuietLogger.create())
+                .readTokens();
+        tokens = new ArrayList<>(lexed.size());
+        for (Token token : lexed) {
+            if (isOperator(token.type()) && token.lineNumber() % 100 < invalidPercent) {
+                token = new Token(TokenType.STRING_LIT, "Typo", token.lineNumber(), token.column());
+            }
+            tokens.add(token);
+        }
+    }
+
+    private static boolean isOperator(TokenType type) {
+        return type == TokenType.GREATER_THAN || type == TokenType.LESS_THAN || type == TokenType.EQUAL
+                || type == TokenType.TILDE || type == TokenType.X;
+    }
+
+    @Benchmark
+    public Object parseExpressions() {
+        return new Parser(tokens).parseExpressions();
+    }
+}
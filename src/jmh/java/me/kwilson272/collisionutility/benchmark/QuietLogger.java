@@ -0,0 +1,24 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates loggers that drop everything, so that warnings about generated files don't
+ * end up being measured.
+ */
+public final class QuietLogger {
+
+    private QuietLogger() {
+    }
+
+    /**
+     * @return a Logger that doesn't log anything
+     */
+    public static Logger create() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+}
@@ -0,0 +1,107 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic collision files for benchmarking.
+ *<p>
+ * Groups are generated in levels. Every group on the first level contains
+ * {@code fanOut} abilities, and every group on a later level contains {@code fanOut}
+ * groups from the level below it, so the deepest groups expand to
+ * {@code fanOut ^ depth} abilities. The rest of the file is made up of collision
+ * declarations between random abilities and groups. The same seed always generates
+ * the same file.
+ */
+public class RuleFileGenerator {
+
+    private static final String[] OPERATORS = {">", "<", "=", "~", "x"};
+
+    private final int abilityCount;
+    private final int depth;
+    private final int fanOut;
+    private final long seed;
+
+    /**
+     * @param abilityCount the number of abilities to pick from, see {@link StandInAbilities}
+     * @param depth the number of levels of groups, 0 for no groups at all
+     * @param fanOut the number of members in every group
+     * @param seed the seed for the random choices
+     */
+    public RuleFileGenerator(int abilityCount, int depth, int fanOut, long seed) {
+        this.abilityCount = abilityCount;
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.seed = seed;
+    }
+
+    /**
+     * @param lines the total number of lines, including group declarations and comments
+     * @return the contents of the collision file
+     */
+    public String generate(int lines) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        builder.append("# Generated with ").append(lines).append(" lines, depth ").append(depth)
+                .append(", fan out ").append(fanOut).append('\n');
+        int written = 1;
+
+        for (int level = 0; level < depth; level++) {
+            for (int group = 0; group < fanOut; group++) {
+                builder.append("Group \"").append(groupName(level, group)).append("\" {");
+                for (int member = 0; member < fanOut; member++) {
+                    if (member > 0) {
+                        builder.append(", ");
+                    }
+                    if (level == 0) {
+                        builder.append(StandInAbilities.name(random.nextInt(abilityCount)));
+                    } else {
+                        builder.append('$').append(groupName(level - 1, (group + member) % fanOut));
+                    }
+                }
+                builder.append("}\n");
+                written++;
+            }
+        }
+
+        while (written < lines) {
+            if (random.nextInt(20) == 0) {
+                builder.append("# A comment between declarations\n");
+            } else {
+                builder.append(operand(random)).append(' ')
+                        .append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+                        .append(operand(random)).append('\n');
+            }
+            written++;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generates a collision file and writes it to a temporary file, which is deleted
+     * when the JVM exits.
+     *
+     * @param lines the total number of lines
+     * @return the path of the new file
+     * @throws IOException if the file could not be written
+     */
+    public Path write(int lines) throws IOException {
+        Path path = Files.createTempFile("collisions", ".txt");
+        path.toFile().deleteOnExit();
+        Files.writeString(path, generate(lines));
+        return path;
+    }
+
+    private String operand(Random random) {
+        if (depth > 0 && random.nextInt(4) == 0) {
+            return "$" + groupName(random.nextInt(depth), random.nextInt(fanOut));
+        }
+        return StandInAbilities.name(random.nextInt(abilityCount));
+    }
+
+    private static String groupName(int level, int group) {
+        return "Level" + level + "Group" + group;
+    }
+}
@@ -0,0 +1,37 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+
+/**
+ * A stand-in for ProjectKorra's ability registry, made up of synthetic abilities named
+ * {@code Ability0}, {@code Ability1}, and so on. A handful of them also get aliases, the
+ * same way the plugin aliases abilities that share a name.
+ */
+public final class StandInAbilities {
+
+    private StandInAbilities() {
+    }
+
+    /**
+     * @param index the index of the synthetic ability
+     * @return the name of the ability
+     */
+    public static String name(int index) {
+        return "Ability" + index;
+    }
+
+    /**
+     * @param abilityCount the number of synthetic abilities to register
+     * @return an AbilitySymbolTable that resolves every synthetic ability
+     */
+    public static AbilitySymbolTable symbols(int abilityCount) {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(false);
+        for (int i = 0; i < abilityCount; i++) {
+            int id = builder.addAbility(name(i));
+            if (i % 16 == 0) {
+                builder.addAlias("Alias" + i, id);
+            }
+        }
+        return builder.build();
+    }
+}
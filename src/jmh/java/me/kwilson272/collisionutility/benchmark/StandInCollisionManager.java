@@ -0,0 +1,113 @@
+package me.kwilson272.collisionutility.benchmark;
+
+import me.kwilson272.collisionutility.compiler.CollisionRule;
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+import me.kwilson272.collisionutility.detection.InstanceSnapshot;
+import me.kwilson272.collisionutility.detection.RuleSet;
+
+import java.util.Random;
+
+/**
+ * A stand-in for ProjectKorra's CollisionManager. It holds the rules of a compiled
+ * table, and detects collisions the way CollisionManager does, by checking every
+ * instance of a rule's first ability against every instance of its second.
+ */
+public class StandInCollisionManager {
+
+    private final RuleSet rules;
+
+    /**
+     * @param table the compiled table whose rules are registered, ability ids are used as types
+     */
+    public StandInCollisionManager(CollisionTable table) {
+        RuleSet.Builder builder = RuleSet.builder();
+        for (CollisionRule rule : table.getRules()) {
+            builder.addRule(rule.first(), rule.second(), rule.removeFirst(), rule.removeSecond());
+        }
+        rules = builder.build();
+    }
+
+    /**
+     * @return the registered rules
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * Fills a snapshot with randomly placed instances of the abilities that have rules.
+     *
+     * @param snapshot the InstanceSnapshot to clear and fill
+     * @param instances the number of instances
+     * @param players the number of players owning the instances
+     * @param area the width of the square area the instances are spread over
+     * @param seed the seed for the random placement
+     */
+    public void populate(InstanceSnapshot snapshot, int instances, int players, double area, long seed) {
+        Random random = new Random(seed);
+        snapshot.clear();
+        for (int i = 0; i < instances; i++) {
+            int type = 0;
+            if (rules.size() > 0) {
+                int rule = random.nextInt(rules.size());
+                type = random.nextBoolean() ? rules.firstType(rule) : rules.secondType(rule);
+            }
+            snapshot.addInstance(type, random.nextInt(players), 0.5 + random.nextDouble() * 2);
+
+            double x = random.nextDouble() * area;
+            double z = random.nextDouble() * area;
+            int locations = 1 + random.nextInt(4);
+            for (int location = 0; location < locations; location++) {
+                snapshot.addLocation(0, x + location, 64 + random.nextDouble() * 4, z);
+            }
+        }
+    }
+
+    /**
+     * Detects collisions the way CollisionManager does.
+     *
+     * @param snapshot the instances to check
+     * @param certainNoCollisionDistance the distance at which the rest of a pair's locations are skipped
+     * @return the number of collisions found
+     */
+    public int detectCollisions(InstanceSnapshot snapshot, double certainNoCollisionDistance) {
+        double certainNoCollisionSquared = certainNoCollisionDistance * certainNoCollisionDistance;
+        int collisions = 0;
+        for (int rule = 0; rule < rules.size(); rule++) {
+            for (int first = 0; first < snapshot.size(); first++) {
+                if (snapshot.type(first) != rules.firstType(rule)) {
+                    continue;
+                }
+                for (int second = 0; second < snapshot.size(); second++) {
+                    if (snapshot.type(second) != rules.secondType(rule)
+                            || snapshot.owner(first) == snapshot.owner(second)) {
+                        continue;
+                    }
+                    if (collides(snapshot, first, second, certainNoCollisionSquared)) {
+                        collisions++;
+                    }
+                }
+            }
+        }
+        return collisions;
+    }
+
+    private boolean collides(InstanceSnapshot snapshot, int first, int second, double certainNoCollisionSquared) {
+        double requiredDistance = snapshot.radius(first) + snapshot.radius(second);
+        double requiredSquared = requiredDistance * requiredDistance;
+        for (int i = snapshot.locationStart(first); i < snapshot.locationEnd(first); i++) {
+            for (int j = snapshot.locationStart(second); j < snapshot.locationEnd(second); j++) {
+                double dx = snapshot.x(i) - snapshot.x(j);
+                double dy = snapshot.y(i) - snapshot.y(j);
+                double dz = snapshot.z(i) - snapshot.z(j);
+                double distanceSquared = dx * dx + dy * dy + dz * dz;
+                if (distanceSquared <= requiredSquared) {
+                    return true;
+                } else if (distanceSquared >= certainNoCollisionSquared) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,178 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.Element;
+import com.projectkorra.projectkorra.ability.AddonAbility;
+import com.projectkorra.projectkorra.ability.ComboAbility;
+import com.projectkorra.projectkorra.ability.CoreAbility;
+import com.projectkorra.projectkorra.ability.PassiveAbility;
+import com.projectkorra.projectkorra.firebending.FireBlast;
+import com.projectkorra.projectkorra.firebending.FireBlastCharged;
+import com.projectkorra.projectkorra.waterbending.SurgeWall;
+import com.projectkorra.projectkorra.waterbending.SurgeWave;
+import com.projectkorra.projectkorra.waterbending.Torrent;
+import com.projectkorra.projectkorra.waterbending.TorrentWave;
+import com.projectkorra.projectkorra.waterbending.WaterSpout;
+import com.projectkorra.projectkorra.waterbending.WaterSpoutWave;
+import com.projectkorra.projectkorra.waterbending.ice.IceSpikeBlast;
+import com.projectkorra.projectkorra.waterbending.ice.IceSpikePillar;
+
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the abilities registered with ProjectKorra, along with
+ * our aliases for them. Capturing this on the main thread lets the rest of the
+ * compile stage run without touching ProjectKorra's registry.
+ *<p>
+ * The compile stage only sees the {@link AbilitySymbolTable}, and works on ability
+ * ids. This lookup binds those ids back to CoreAbility instances when registering.
+ *<p>
+ * Every element and sub-element, along with combos, passives, addons, and all abilities,
+ * is captured as a selector in the symbol table. Abilities of a sub-element are also
+ * selected by its parent element.
+ */
+public class AbilityLookup {
+
+    private static final String ALL = "All";
+    private static final String COMBO = "Combo";
+    private static final String PASSIVE = "Passive";
+    private static final String ADDON = "Addon";
+
+    private final AbilitySymbolTable symbols;
+    private final List<CoreAbility> abilities;
+    private final Map<CoreAbility, Integer> ids;
+
+    private AbilityLookup(AbilitySymbolTable symbols, List<CoreAbility> abilities,
+                          Map<CoreAbility, Integer> ids) {
+        this.symbols = symbols;
+        this.abilities = abilities;
+        this.ids = ids;
+    }
+
+    /**
+     * Captures the currently registered abilities. This should be called from the
+     * main thread.
+     *
+     * @param caseInsensitive true if aliases should be matched regardless of case
+     * @return a new AbilityLookup
+     */
+    public static AbilityLookup capture(boolean caseInsensitive) {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(caseInsensitive);
+        List<CoreAbility> abilities = new ArrayList<>();
+        Map<CoreAbility, Integer> ids = new IdentityHashMap<>();
+
+        // Resolve through getAbility so that abilities sharing a name map to the same
+        // CoreAbility ProjectKorra itself would hand out. Sorted so ids are assigned
+        // in the same order every time.
+        List<CoreAbility> registered = new ArrayList<>(CoreAbility.getAbilities());
+        registered.sort(Comparator.comparing(CoreAbility::getName));
+        for (CoreAbility ability : registered) {
+            CoreAbility resolved = CoreAbility.getAbility(ability.getName());
+            if (resolved != null) {
+                add(builder, abilities, ids, resolved);
+            }
+        }
+
+        // Some Abilities in PK share names, which makes it impossible for us to retrieve
+        // the CoreAbility we want, so we will provide some alternate ways of referring
+        // to these classes
+        addAlias(builder, abilities, ids, "FireBlast", CoreAbility.getAbility(FireBlast.class));
+        addAlias(builder, abilities, ids, "FireBlastCharged", CoreAbility.getAbility(FireBlastCharged.class));
+        addAlias(builder, abilities, ids, "ChargedFireBlast", CoreAbility.getAbility(FireBlastCharged.class));
+        addAlias(builder, abilities, ids, "CFB", CoreAbility.getAbility(FireBlastCharged.class));
+        addAlias(builder, abilities, ids, "IceSpikeBlast", CoreAbility.getAbility(IceSpikeBlast.class));
+        addAlias(builder, abilities, ids, "IceSpike", CoreAbility.getAbility(IceSpikePillar.class));
+        addAlias(builder, abilities, ids, "WaterSpout", CoreAbility.getAbility(WaterSpout.class));
+        addAlias(builder, abilities, ids, "WaterWave", CoreAbility.getAbility(WaterSpoutWave.class));
+        addAlias(builder, abilities, ids, "WaterSpoutWave", CoreAbility.getAbility(WaterSpoutWave.class));
+        addAlias(builder, abilities, ids, "Torrent", CoreAbility.getAbility(Torrent.class));
+        addAlias(builder, abilities, ids, "TorrentWave", CoreAbility.getAbility(TorrentWave.class));
+        addAlias(builder, abilities, ids, "TorrentRing", CoreAbility.getAbility(TorrentWave.class));
+        addAlias(builder, abilities, ids, "Surge", CoreAbility.getAbility(SurgeWave.class));
+        addAlias(builder, abilities, ids, "SurgeWave", CoreAbility.getAbility(SurgeWave.class));
+        addAlias(builder, abilities, ids, "SurgeWall", CoreAbility.getAbility(SurgeWall.class));
+        addAlias(builder, abilities, ids, "SurgeShield", CoreAbility.getAbility(SurgeWall.class));
+
+        // Elements without any abilities are still selectors, so that referencing them
+        // isn't reported as unknown
+        builder.addSelector(ALL).addSelector(COMBO).addSelector(PASSIVE).addSelector(ADDON);
+        for (Element element : Element.getAllElements()) {
+            builder.addSelector(element.getName());
+        }
+        for (Element element : Element.getAllSubElements()) {
+            builder.addSelector(element.getName());
+        }
+        for (int id = 0; id < abilities.size(); id++) {
+            addSelectors(builder, abilities.get(id), id);
+        }
+
+        return new AbilityLookup(builder.build(), abilities, ids);
+    }
+
+    private static int add(AbilitySymbolTable.Builder builder, List<CoreAbility> abilities,
+                           Map<CoreAbility, Integer> ids, CoreAbility ability) {
+        Integer id = ids.get(ability);
+        if (id == null) {
+            id = builder.addAbility(ability.getName());
+            abilities.add(ability);
+            ids.put(ability, id);
+        }
+        return id;
+    }
+
+    private static void addAlias(AbilitySymbolTable.Builder builder, List<CoreAbility> abilities,
+                                 Map<CoreAbility, Integer> ids, String alias, CoreAbility ability) {
+        if (ability != null) {
+            builder.addAlias(alias, add(builder, abilities, ids, ability));
+        }
+    }
+
+    private static void addSelectors(AbilitySymbolTable.Builder builder, CoreAbility ability, int id) {
+        builder.addToSelector(ALL, id);
+        Element element = ability.getElement();
+        if (element != null) {
+            builder.addToSelector(element.getName(), id);
+            if (element instanceof Element.SubElement subElement && subElement.getParentElement() != null) {
+                builder.addToSelector(subElement.getParentElement().getName(), id);
+            }
+        }
+        if (ability instanceof ComboAbility) {
+            builder.addToSelector(COMBO, id);
+        }
+        if (ability instanceof PassiveAbility) {
+            builder.addToSelector(PASSIVE, id);
+        }
+        if (ability instanceof AddonAbility) {
+            builder.addToSelector(ADDON, id);
+        }
+    }
+
+    /**
+     * @return the AbilitySymbolTable used to resolve names during the compile stage
+     */
+    public AbilitySymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @param id the id of an ability in the symbol table
+     * @return the CoreAbility with that id
+     */
+    public CoreAbility getAbility(int id) {
+        return abilities.get(id);
+    }
+
+    /**
+     * @param ability the CoreAbility to look up
+     * @return the id of the ability, or {@link AbilitySymbolTable#UNKNOWN} if the ability
+     * is not part of this lookup
+     */
+    public int getId(CoreAbility ability) {
+        return ids.getOrDefault(ability, AbilitySymbolTable.UNKNOWN);
+    }
+}
@@ -0,0 +1,31 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ability.CoreAbility;
+
+/**
+ * An unordered pair of abilities, used as the key for collisions. Two pairs are
+ * equal if they contain the same abilities, regardless of which side they are on.
+ *
+ * @param first one of the abilities in the pair
+ * @param second the other ability in the pair
+ */
+public record AbilityPair(CoreAbility first, CoreAbility second) {
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AbilityPair other)) {
+            return false;
+        }
+        return (first.equals(other.first) && second.equals(other.second))
+                || (first.equals(other.second) && second.equals(other.first));
+    }
+
+    @Override
+    public int hashCode() {
+        // Must be symmetric so that (a, b) and (b, a) hash the same
+        return first.hashCode() ^ second.hashCode();
+    }
+}
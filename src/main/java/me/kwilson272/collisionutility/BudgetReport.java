@@ -0,0 +1,137 @@
+package me.kwilson272.collisionutility;
+
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of how often the {@link CollisionEngine} ran out of its tick budget and
+ * had to defer collision checks to a later tick.
+ *<p>
+ * A tick overran if any check was deferred. Overruns are summed up in the log once per
+ * report interval, so the budget can be sized against real traffic without flooding
+ * the console during a long fight.
+ */
+public class BudgetReport {
+
+    private static final int REPORT_INTERVAL = 20 * 60;
+
+    private final Logger logger;
+    private final long budgetNanos;
+
+    private long ticks;
+    private long overrunTicks;
+    private long testedChecks;
+    private long deferredChecks;
+    private int longestDeferral;
+    private long slowestTickNanos;
+
+    private int intervalTicks;
+    private int intervalOverruns;
+    private long intervalDeferred;
+    private int intervalLongestDeferral;
+
+    /**
+     * @param logger the Logger overruns are reported to
+     * @param budgetNanos the budget each tick is held to, in nanoseconds
+     */
+    public BudgetReport(Logger logger, long budgetNanos) {
+        this.logger = logger;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Adds a single tick of detection.
+     *
+     * @param tickNanos the time detection took
+     * @param tested the number of checks that were tested
+     * @param deferred the number of checks that were deferred
+     * @param oldestDeferral the number of ticks in a row the longest deferred check has gone untested
+     */
+    public void record(long tickNanos, int tested, int deferred, int oldestDeferral) {
+        ticks++;
+        testedChecks += tested;
+        slowestTickNanos = Math.max(slowestTickNanos, tickNanos);
+        if (deferred > 0) {
+            overrunTicks++;
+            deferredChecks += deferred;
+            longestDeferral = Math.max(longestDeferral, oldestDeferral);
+            intervalOverruns++;
+            intervalDeferred += deferred;
+            intervalLongestDeferral = Math.max(intervalLongestDeferral, oldestDeferral);
+        }
+
+        if (++intervalTicks == REPORT_INTERVAL) {
+            if (intervalOverruns > 0) {
+                logger.warning("Collision checks ran over the " + LoadMetrics.formatMillis(budgetNanos)
+                        + " budget on " + intervalOverruns + " of the last " + intervalTicks + " ticks, "
+                        + intervalDeferred + " checks were deferred, the longest for "
+                        + intervalLongestDeferral + " ticks in a row");
+            }
+            intervalTicks = 0;
+            intervalOverruns = 0;
+            intervalDeferred = 0;
+            intervalLongestDeferral = 0;
+        }
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+    public void reset() {
+        ticks = 0;
+        overrunTicks = 0;
+        testedChecks = 0;
+        deferredChecks = 0;
+        longestDeferral = 0;
+        slowestTickNanos = 0;
+    }
+
+    /**
+     * @return the budget each tick is held to, in nanoseconds
+     */
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * @return the number of ticks detection ran on
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the number of ticks that had to defer checks
+     */
+    public long getOverrunTicks() {
+        return overrunTicks;
+    }
+
+    /**
+     * @return the number of checks that were tested
+     */
+    public long getTestedChecks() {
+        return testedChecks;
+    }
+
+    /**
+     * @return the number of checks that were deferred, a check deferred on several ticks
+     * is counted once per tick
+     */
+    public long getDeferredChecks() {
+        return deferredChecks;
+    }
+
+    /**
+     * @return the most ticks in a row a single check has gone untested
+     */
+    public int getLongestDeferral() {
+        return longestDeferral;
+    }
+
+    /**
+     * @return the longest time detection took on a single tick
+     */
+    public long getSlowestTickNanos() {
+        return slowestTickNanos;
+    }
+}
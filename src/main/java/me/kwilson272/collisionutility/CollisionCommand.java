@@ -0,0 +1,260 @@
+package me.kwilson272.collisionutility;
+
+import me.kwilson272.collisionutility.compiler.AbilityList;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Handles the /collisionutility command.
+ */
+public class CollisionCommand implements TabExecutor {
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int DEFAULT_ROWS = 10;
+    private static final int DEFAULT_RECORD_SECONDS = 60;
+
+    private final CollisionUtility collisionUtility;
+
+    public CollisionCommand(CollisionUtility collisionUtility) {
+        this.collisionUtility = collisionUtility;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0) {
+            sendUsage(sender, label);
+            return true;
+        }
+        switch (args[0].toLowerCase(Locale.ROOT)) {
+            case "stats" -> onStats(sender, label, args);
+            case "timings" -> onTimings(sender);
+            case "budget" -> onBudget(sender, args);
+            case "export" -> onExport(sender);
+            case "record" -> onRecord(sender, args);
+            default -> sendUsage(sender, label);
+        }
+        return true;
+    }
+
+    private void sendUsage(CommandSender sender, String label) {
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " stats [lines|pairs] [rows]"
+                + ChatColor.GRAY + " - Shows the most expensive collisions");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " stats dump"
+                + ChatColor.GRAY + " - Writes the collision counters to a file");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " stats reset"
+                + ChatColor.GRAY + " - Sets the collision counters back to 0");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " timings"
+                + ChatColor.GRAY + " - Shows how long the last load of the collisions file took");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " budget [reset]"
+                + ChatColor.GRAY + " - Shows how often collision checks ran over the tick budget");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " export"
+                + ChatColor.GRAY + " - Writes the registered abilities to a file for the offline compiler");
+        sender.sendMessage(ChatColor.GOLD + "/" + label + " record [seconds|stop]"
+                + ChatColor.GRAY + " - Records the live abilities to a file for the replay runner");
+    }
+
+    private void onRecord(CommandSender sender, String[] args) {
+        if (args.length > 1 && args[1].equalsIgnoreCase("stop")) {
+            if (collisionUtility.stopRecording()) {
+                sender.sendMessage(ChatColor.GREEN + "The recording has been stopped.");
+            } else {
+                sender.sendMessage(ChatColor.RED + "Nothing is being recorded.");
+            }
+            return;
+        }
+
+        int seconds = DEFAULT_RECORD_SECONDS;
+        if (args.length > 1) {
+            try {
+                seconds = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                seconds = 0;
+            }
+            if (seconds <= 0) {
+                sender.sendMessage(ChatColor.RED + args[1] + " is not a positive number of seconds.");
+                return;
+            }
+        }
+
+        Path path = collisionUtility.getDataFolder().toPath().resolve("recordings")
+                .resolve("recording-" + LocalDateTime.now().format(FILE_DATE) + ".bin");
+        try {
+            collisionUtility.startRecording(path, (int) Math.min(seconds * 20L, Integer.MAX_VALUE));
+            sender.sendMessage(ChatColor.GREEN + "Recording the next " + seconds + " seconds to "
+                    + path.getFileName() + ".");
+        } catch (IOException e) {
+            collisionUtility.getLogger().log(Level.WARNING, "Could not start recording to " + path, e);
+            sender.sendMessage(ChatColor.RED + "Could not start the recording, check the console for details.");
+        }
+    }
+
+    private void onExport(CommandSender sender) {
+        Path path = collisionUtility.getDataFolder().toPath().resolve("abilities.txt");
+        try {
+            // Aliases are kept as written, the offline compiler decides how to match them
+            AbilityList.write(AbilityLookup.capture(false).getSymbols(), path);
+            sender.sendMessage(ChatColor.GREEN + "Abilities written to " + path.getFileName());
+        } catch (IOException e) {
+            collisionUtility.getLogger().log(Level.WARNING, "Could not write the abilities to " + path, e);
+            sender.sendMessage(ChatColor.RED + "Could not write the abilities, check the console for details.");
+        }
+    }
+
+    private void onBudget(CommandSender sender, String[] args) {
+        BudgetReport report = collisionUtility.getBudgetReport();
+        if (report == null) {
+            sender.sendMessage(ChatColor.RED + "The tick budget only applies when CollisionEngine.Enabled is set "
+                    + "to true and CollisionEngine.TickBudget is above 0 in the config.");
+            return;
+        }
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            report.reset();
+            sender.sendMessage(ChatColor.GREEN + "The tick budget counters have been reset.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "Tick budget of " + ChatColor.WHITE
+                + LoadMetrics.formatMillis(report.getBudgetNanos()) + ChatColor.GOLD + " over "
+                + report.getTicks() + " ticks:");
+        sender.sendMessage(ChatColor.AQUA + "Overran on: " + ChatColor.WHITE + report.getOverrunTicks() + " ticks");
+        sender.sendMessage(ChatColor.AQUA + "Checks tested: " + ChatColor.WHITE + report.getTestedChecks()
+                + ChatColor.GRAY + ", deferred: " + ChatColor.WHITE + report.getDeferredChecks());
+        sender.sendMessage(ChatColor.AQUA + "Longest deferral: " + ChatColor.WHITE + report.getLongestDeferral()
+                + " ticks");
+        sender.sendMessage(ChatColor.AQUA + "Slowest tick: " + ChatColor.WHITE
+                + LoadMetrics.formatMillis(report.getSlowestTickNanos()));
+    }
+
+    private void onTimings(CommandSender sender) {
+        LoadMetrics metrics = collisionUtility.getLastLoadMetrics();
+        if (metrics.getStageNanos().isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "The collisions file has not finished loading yet.");
+            return;
+        }
+
+        LocalDateTime startedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(metrics.getStartedAt()),
+                ZoneId.systemDefault());
+        sender.sendMessage(ChatColor.GOLD + "Last load at " + startedAt.format(DateTimeFormatter.ISO_LOCAL_TIME)
+                + " took " + ChatColor.WHITE + LoadMetrics.formatMillis(metrics.getTotalNanos()));
+        for (Map.Entry<String, Long> stage : metrics.getStageNanos().entrySet()) {
+            sender.sendMessage(ChatColor.AQUA + stage.getKey() + ": " + ChatColor.WHITE
+                    + LoadMetrics.formatMillis(stage.getValue()));
+        }
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<String, Long> count : metrics.getCounts().entrySet()) {
+            if (!counts.isEmpty()) {
+                counts.append(ChatColor.GRAY).append(", ");
+            }
+            counts.append(ChatColor.GRAY).append(count.getKey()).append(": ")
+                    .append(ChatColor.WHITE).append(count.getValue());
+        }
+        sender.sendMessage(counts.toString());
+    }
+
+    private void onStats(CommandSender sender, String label, String[] args) {
+        CollisionStats stats = collisionUtility.getStats();
+        if (stats == null) {
+            sender.sendMessage(ChatColor.RED + "Collision stats are only tracked when CollisionEngine.Enabled "
+                    + "and CollisionEngine.TrackStats are set to true in the config.");
+            return;
+        }
+
+        String mode = args.length > 1 ? args[1].toLowerCase(Locale.ROOT) : "lines";
+        switch (mode) {
+            case "lines", "pairs" -> showStats(sender, stats, mode.equals("lines"), args);
+            case "dump" -> dumpStats(sender, stats);
+            case "reset" -> {
+                stats.reset();
+                sender.sendMessage(ChatColor.GREEN + "Collision stats have been reset.");
+            }
+            default -> sendUsage(sender, label);
+        }
+    }
+
+    private void showStats(CommandSender sender, CollisionStats stats, boolean byLine, String[] args) {
+        int rows = DEFAULT_ROWS;
+        if (args.length > 2) {
+            try {
+                rows = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + args[2] + " is not a number.");
+                return;
+            }
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "Most expensive collisions over " + stats.getRounds() + " ticks:");
+        if (byLine) {
+            for (CollisionStats.LineStats line : stats.getLines().stream().limit(rows).toList()) {
+                String source = line.lineNumber() < 0 ? "Not from the collisions files"
+                        : describeLine(line.source(), line.lineNumber());
+                sender.sendMessage(ChatColor.AQUA + source + ChatColor.GRAY + " (" + line.pairs() + " pairs) "
+                        + formatCounters(line.checks(), line.hits(), line.nanos()));
+            }
+        } else {
+            for (CollisionStats.PairStats pair : stats.getPairs().stream().limit(rows).toList()) {
+                String source = pair.getLineNumber() < 0 ? ""
+                        : " (" + describeLine(pair.getSource(), pair.getLineNumber()) + ")";
+                sender.sendMessage(ChatColor.AQUA + pair.getFirst() + " - " + pair.getSecond() + ChatColor.GRAY
+                        + source + " " + formatCounters(pair.getChecks(), pair.getHits(), pair.getNanos()));
+            }
+        }
+    }
+
+    private String describeLine(String source, int lineNumber) {
+        return source != null ? source + ":" + lineNumber : "line " + lineNumber;
+    }
+
+    private String formatCounters(long checks, long hits, long nanos) {
+        return ChatColor.WHITE + String.format("%.3fms", nanos / 1_000_000.0) + ChatColor.GRAY + ", "
+                + checks + " checks, " + hits + " hits";
+    }
+
+    private void dumpStats(CommandSender sender, CollisionStats stats) {
+        Path path = collisionUtility.getDataFolder().toPath().resolve("stats")
+                .resolve("collision-stats-" + LocalDateTime.now().format(FILE_DATE) + ".csv");
+        try {
+            stats.dump(path);
+            sender.sendMessage(ChatColor.GREEN + "Collision stats written to " + path.getFileName());
+        } catch (IOException e) {
+            collisionUtility.getLogger().log(Level.WARNING, "Could not write collision stats to " + path, e);
+            sender.sendMessage(ChatColor.RED + "Could not write the collision stats, check the console for details.");
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        List<String> options = switch (args.length) {
+            case 1 -> List.of("stats", "timings", "budget", "export", "record");
+            case 2 -> switch (args[0].toLowerCase(Locale.ROOT)) {
+                case "stats" -> List.of("lines", "pairs", "dump", "reset");
+                case "budget" -> List.of("reset");
+                case "record" -> List.of("stop");
+                default -> List.<String>of();
+            };
+            default -> List.of();
+        };
+        List<String> completions = new ArrayList<>();
+        for (String option : options) {
+            if (option.startsWith(args[args.length - 1].toLowerCase(Locale.ROOT))) {
+                completions.add(option);
+            }
+        }
+        return completions;
+    }
+}
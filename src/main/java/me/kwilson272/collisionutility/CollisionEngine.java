@@ -0,0 +1,286 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ProjectKorra;
+import com.projectkorra.projectkorra.ability.CoreAbility;
+import com.projectkorra.projectkorra.ability.PassiveAbility;
+import com.projectkorra.projectkorra.ability.util.Collision;
+import com.projectkorra.projectkorra.ability.util.CollisionManager;
+import com.projectkorra.projectkorra.event.AbilityCollisionEvent;
+
+import me.kwilson272.collisionutility.detection.CollisionDetector;
+import me.kwilson272.collisionutility.detection.ContactList;
+import me.kwilson272.collisionutility.detection.InstanceSnapshot;
+import me.kwilson272.collisionutility.detection.RuleCounters;
+import me.kwilson272.collisionutility.detection.RuleSet;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Replaces the collision detection of ProjectKorra's CollisionManager with one that
+ * only checks instances that are near each other.
+ */
+public class CollisionEngine {
+
+    private final Plugin plugin;
+    private final CollisionRegistry registry;
+    private final CollisionStats stats;
+    private final RuleCounters counters;
+    private final BudgetReport budgetReport;
+    private final ForkJoinPool pool;
+    private final CollisionDetector detector;
+    private final InstanceSnapshot snapshot;
+    private final ContactList contacts;
+    private final List<CoreAbility> instances;
+    private final List<Location> locations;
+    private final Map<World, Integer> worldIds;
+    private final Map<Player, Integer> ownerIds;
+
+    private CollisionManager manager;
+    private Collision[] ruleCollisions;
+    private Map<Class<?>, Integer> typeIds;
+    private RuleSet rules;
+    private int[] collidedStamps;
+    private BukkitTask task;
+
+    /**
+     * @param plugin the Plugin the detection task is scheduled under
+     * @param registry the CollisionRegistry used to tag collisions with their line
+     * @param stats the CollisionStats to record into, or null to not record anything
+     * @param cellSize the width of a single broadphase cell in blocks
+     * @param threads the number of threads to test for collisions on, 1 to only use the
+     *                main thread, or 0 to use every core
+     * @param budgetNanos the time detection may take each tick before checks are deferred,
+     *                    or 0 to check everything every tick
+     */
+    public CollisionEngine(Plugin plugin, CollisionRegistry registry, CollisionStats stats,
+                           double cellSize, int threads, long budgetNanos) {
+        this.plugin = plugin;
+        this.registry = registry;
+        this.stats = stats;
+        counters = stats != null ? new RuleCounters() : null;
+        if (threads == 1) {
+            pool = null;
+        } else {
+            pool = new ForkJoinPool(threads > 1 ? threads : Runtime.getRuntime().availableProcessors());
+        }
+        detector = new CollisionDetector(cellSize, pool);
+        detector.setBudget(budgetNanos);
+        budgetReport = budgetNanos > 0 ? new BudgetReport(plugin.getLogger(), budgetNanos) : null;
+        snapshot = new InstanceSnapshot();
+        contacts = new ContactList();
+        instances = new ArrayList<>();
+        locations = new ArrayList<>();
+        worldIds = new HashMap<>();
+        ownerIds = new HashMap<>();
+        ruleCollisions = new Collision[0];
+        typeIds = new HashMap<>();
+        rules = RuleSet.builder().build();
+        collidedStamps = new int[0];
+    }
+
+    /**
+     * Stops ProjectKorra's collision detection and starts running ours every tick.
+     */
+    public void start() {
+        stopTask();
+        manager = ProjectKorra.getCollisionManager();
+        manager.stopCollisionDetection();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Stops our collision detection and hands it back to ProjectKorra.
+     */
+    public void stop() {
+        stopTask();
+        if (pool != null) {
+            pool.shutdown();
+        }
+        ProjectKorra.getCollisionManager().startCollisionDetection();
+    }
+
+    /**
+     * @return the BudgetReport overruns are recorded in, or null if there is no tick budget
+     */
+    public BudgetReport getBudgetReport() {
+        return budgetReport;
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void tick() {
+        CollisionManager current = ProjectKorra.getCollisionManager();
+        if (current != manager) {
+            // ProjectKorra replaces its manager when it reloads, which starts it again
+            manager = current;
+            manager.stopCollisionDetection();
+        }
+        refreshRules(manager.getCollisions());
+        if (rules.size() == 0 || !hasMultipleActiveInstances()) {
+            return;
+        }
+
+        takeSnapshot();
+        long startNanos = System.nanoTime();
+        detector.detect(snapshot, rules, manager.getCertainNoCollisionDistance(), contacts, counters);
+        if (budgetReport != null) {
+            budgetReport.record(System.nanoTime() - startNanos, detector.getTestedCount(),
+                    detector.getDeferredCount(), detector.getOldestDeferral());
+        }
+        if (stats != null) {
+            stats.record(counters);
+        }
+        resolveContacts(manager.isRemoveMultipleInstances());
+
+        // Don't keep abilities alive until the next tick
+        instances.clear();
+        locations.clear();
+    }
+
+    /**
+     * ProjectKorra skips detection entirely unless more than one non-passive instance is
+     * alive, even if passives could collide.
+     */
+    private boolean hasMultipleActiveInstances() {
+        int activeInstances = 0;
+        for (CoreAbility ability : CoreAbility.getAbilitiesByInstances()) {
+            if (!(ability instanceof PassiveAbility) && ++activeInstances > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the RuleSet if the registered collisions have changed since the last tick.
+     */
+    private void refreshRules(List<Collision> collisions) {
+        if (collisions.size() == ruleCollisions.length) {
+            int i = 0;
+            while (i < ruleCollisions.length && collisions.get(i) == ruleCollisions[i]) {
+                i++;
+            }
+            if (i == ruleCollisions.length) {
+                return;
+            }
+        }
+
+        ruleCollisions = collisions.toArray(new Collision[0]);
+        typeIds = new HashMap<>();
+        RuleSet.Builder builder = RuleSet.builder();
+        for (Collision collision : ruleCollisions) {
+            // ProjectKorra looks instances up by class, so that is what a type is
+            int firstType = typeIds.computeIfAbsent(collision.getAbilityFirst().getClass(), k -> typeIds.size());
+            int secondType = typeIds.computeIfAbsent(collision.getAbilitySecond().getClass(), k -> typeIds.size());
+            builder.addRule(firstType, secondType, collision.isRemovingFirst(), collision.isRemovingSecond(),
+                    registry.getPriority(collision), registry.getInterval(collision));
+        }
+        rules = builder.build();
+        if (stats != null) {
+            stats.bind(ruleCollisions, registry);
+        }
+    }
+
+    private void takeSnapshot() {
+        snapshot.clear();
+        instances.clear();
+        locations.clear();
+        worldIds.clear();
+        ownerIds.clear();
+
+        for (CoreAbility ability : CoreAbility.getAbilitiesByInstances()) {
+            Integer type = typeIds.get(ability.getClass());
+            if (type == null || ability.getPlayer() == null || !ability.isCollidable()) {
+                continue;
+            }
+            List<Location> abilityLocations = ability.getLocations();
+            if (abilityLocations == null) {
+                continue;
+            }
+            int firstLocation = locations.size();
+            for (Location location : abilityLocations) {
+                if (location != null) {
+                    locations.add(location);
+                }
+            }
+            // The detector expects every instance to have at least one location
+            if (locations.size() == firstLocation) {
+                continue;
+            }
+
+            int owner = ownerIds.computeIfAbsent(ability.getPlayer(), k -> ownerIds.size());
+            snapshot.addInstance(type, owner, ability.getCollisionRadius(), ability.getId());
+            instances.add(ability);
+            for (int i = firstLocation; i < locations.size(); i++) {
+                Location location = locations.get(i);
+                int world = worldIds.computeIfAbsent(location.getWorld(), k -> worldIds.size());
+                snapshot.addLocation(world, location.getX(), location.getY(), location.getZ());
+            }
+        }
+    }
+
+    /**
+     * Resolves the contacts in order. Instances removed by an earlier contact no longer
+     * collide, and if multiple instances may not be removed at once, each instance only
+     * collides once per rule.
+     */
+    private void resolveContacts(boolean removeMultipleInstances) {
+        if (collidedStamps.length < instances.size()) {
+            collidedStamps = new int[Math.max(instances.size(), collidedStamps.length * 2)];
+        } else {
+            Arrays.fill(collidedStamps, 0, instances.size(), 0);
+        }
+
+        for (int i = 0; i < contacts.size(); i++) {
+            int rule = contacts.rule(i);
+            int first = contacts.first(i);
+            int second = contacts.second(i);
+            CoreAbility abilityFirst = instances.get(first);
+            CoreAbility abilitySecond = instances.get(second);
+            if (abilityFirst.isRemoved() || abilitySecond.isRemoved()) {
+                continue;
+            }
+            if (!removeMultipleInstances
+                    && (collidedStamps[first] == rule + 1 || collidedStamps[second] == rule + 1)) {
+                continue;
+            }
+
+            Collision collision = ruleCollisions[rule];
+            Location locationFirst = locations.get(contacts.firstLocation(i));
+            Location locationSecond = locations.get(contacts.secondLocation(i));
+            Collision forwardCollision = new Collision(abilityFirst, abilitySecond, collision.isRemovingFirst(),
+                    collision.isRemovingSecond(), locationFirst, locationSecond);
+            Collision reverseCollision = new Collision(abilitySecond, abilityFirst, collision.isRemovingSecond(),
+                    collision.isRemovingFirst(), locationSecond, locationFirst);
+            AbilityCollisionEvent event = new AbilityCollisionEvent(forwardCollision);
+            Bukkit.getPluginManager().callEvent(event);
+            if (event.isCancelled()) {
+                continue;
+            }
+
+            abilityFirst.handleCollision(forwardCollision);
+            abilitySecond.handleCollision(reverseCollision);
+            if (!removeMultipleInstances) {
+                collidedStamps[first] = rule + 1;
+                collidedStamps[second] = rule + 1;
+            }
+        }
+    }
+}
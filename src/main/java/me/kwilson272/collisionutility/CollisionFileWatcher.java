@@ -0,0 +1,180 @@
+package me.kwilson272.collisionutility;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Watches the plugin's data folder for changes to the collisions file, and the collisions
+ * directory for changes to any of its files. A callback is run on the main thread once
+ * the files have been left alone for a while.
+ *<p>
+ * Editors often save a file in several steps, or the file is saved several times in a
+ * row, so every change restarts the wait. Only the last change of a burst triggers the
+ * callback. Watching happens on its own daemon thread, which blocks on the WatchService
+ * until something in a watched folder changes. Folders created inside the collisions
+ * directory are watched as soon as they appear.
+ */
+public class CollisionFileWatcher implements Runnable {
+
+    private final Plugin plugin;
+    private final Path folder;
+    private final String fileName;
+    private final Path directory;
+    private final long debounceMillis;
+    private final Runnable onChange;
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watched;
+
+    /**
+     * @param plugin the Plugin the callback is scheduled under
+     * @param file the collisions file to watch
+     * @param directory the collisions directory to watch, which does not have to exist yet
+     * @param debounceMillis how long the files must go unchanged before the callback runs
+     * @param onChange the callback, which is run on the main thread
+     */
+    public CollisionFileWatcher(Plugin plugin, Path file, Path directory, long debounceMillis,
+                                Runnable onChange) {
+        this.plugin = plugin;
+        this.folder = file.toAbsolutePath().normalize().getParent();
+        this.fileName = file.getFileName().toString();
+        this.directory = directory.toAbsolutePath().normalize();
+        watched = new ConcurrentHashMap<>();
+        this.debounceMillis = Math.max(debounceMillis, 0);
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts watching on a new thread.
+     *
+     * @return true if the folder is being watched
+     */
+    public boolean start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            watch(folder);
+            if (Files.isDirectory(directory)) {
+                watchTree(directory);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not watch " + folder + " for changes", e);
+            stop();
+            return false;
+        }
+        Thread thread = new Thread(this, plugin.getName() + " File Watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stops watching. A change that is still being waited on is dropped.
+     */
+    public void stop() {
+        if (watchService != null) {
+            try {
+                // Wakes the watching thread up, which then exits
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+            watchService = null;
+        }
+        watched.clear();
+    }
+
+    private void watch(Path path) throws IOException {
+        WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watched.put(key, path);
+    }
+
+    /**
+     * Watches a folder of the collisions directory and every folder inside it, as a
+     * WatchService only reports changes to the folder itself.
+     */
+    private void watchTree(Path root) throws IOException {
+        List<Path> folders;
+        try (Stream<Path> walk = Files.walk(root)) {
+            folders = walk.filter(Files::isDirectory).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Path path : folders) {
+            watch(path);
+        }
+    }
+
+    @Override
+    public void run() {
+        WatchService service = watchService;
+        boolean pending = false;
+        try {
+            while (true) {
+                WatchKey key = pending ? service.poll(debounceMillis, TimeUnit.MILLISECONDS) : service.take();
+                if (key == null) {
+                    // Nothing changed since the last change, so the burst is over
+                    pending = false;
+                    if (plugin.isEnabled()) {
+                        Bukkit.getScheduler().runTask(plugin, onChange);
+                    }
+                    continue;
+                }
+                Path parent = watched.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        pending = true;
+                    } else if (parent != null && event.context() instanceof Path name) {
+                        pending |= onEvent(event, parent.resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    watched.remove(key);
+                    if (folder.equals(parent)) {
+                        plugin.getLogger().log(Level.WARNING, folder + " can no longer be watched for changes");
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * @return true if the event changes one of the collision files
+     */
+    private boolean onEvent(WatchEvent<?> event, Path path) {
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)
+                && path.startsWith(directory)) {
+            // A new folder may already have files in it by the time it is watched
+            try {
+                watchTree(path);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not watch " + path + " for changes", e);
+            }
+            return true;
+        }
+        if (path.startsWith(directory)) {
+            // Deleting a folder only reports the folder, not the files that were in it
+            return path.toString().endsWith(".txt") || event.kind() == StandardWatchEventKinds.ENTRY_DELETE;
+        }
+        return path.getParent().equals(folder) && path.getFileName().toString().equals(fileName);
+    }
+}
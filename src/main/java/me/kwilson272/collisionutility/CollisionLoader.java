@@ -1,228 +1,369 @@
 package me.kwilson272.collisionutility;
 
 import com.projectkorra.projectkorra.ProjectKorra;
-import com.projectkorra.projectkorra.ability.CoreAbility;
 import com.projectkorra.projectkorra.ability.util.Collision;
-import com.projectkorra.projectkorra.firebending.FireBlast;
-import com.projectkorra.projectkorra.firebending.FireBlastCharged;
-import com.projectkorra.projectkorra.waterbending.SurgeWall;
-import com.projectkorra.projectkorra.waterbending.SurgeWave;
-import com.projectkorra.projectkorra.waterbending.Torrent;
-import com.projectkorra.projectkorra.waterbending.TorrentWave;
-import com.projectkorra.projectkorra.waterbending.WaterSpout;
-import com.projectkorra.projectkorra.waterbending.WaterSpoutWave;
-import com.projectkorra.projectkorra.waterbending.ice.IceSpikeBlast;
-
-import com.projectkorra.projectkorra.waterbending.ice.IceSpikePillar;
-import me.kwilson272.collisionutility.parser.Lexer;
-import me.kwilson272.collisionutility.parser.Parser;
-import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
-import me.kwilson272.collisionutility.parser.grammar.Expression;
-import me.kwilson272.collisionutility.parser.grammar.GroupDeclaration;
-import me.kwilson272.collisionutility.parser.grammar.Operand;
-import me.kwilson272.collisionutility.parser.token.Token;
-import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+import me.kwilson272.collisionutility.compiler.CollisionCache;
+import me.kwilson272.collisionutility.compiler.CollisionCompiler;
+import me.kwilson272.collisionutility.compiler.CollisionRule;
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+import me.kwilson272.collisionutility.compiler.RuleFinding;
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.RuleFileReader;
 
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  * Handles converting parsed expressions into collisions and registering them.
+ *<p>
+ * Loading happens in two stages. {@link #compile()} reads and resolves the collisions
+ * file without touching ProjectKorra, so it can run on an async worker, while
+ * {@link #apply(CollisionTable)} registers the result and must run on the main thread.
+ * Every stage is timed and counted in the loader's {@link LoadMetrics}. Once registered,
+ * the result is published to other plugins as a {@link CollisionRules} snapshot.
+ *<p>
+ * Problems found in the collision files are collected while loading, and logged
+ * together once the files are compiled.
  */
 public class CollisionLoader {
 
-    private boolean doVerbose;
+    private static final int MAX_REPORTED_FINDINGS = 20;
+    private static final int MAX_REPORTED_DIAGNOSTICS = 20;
+    private static final int SUMMARIZED_KINDS = 3;
 
     private final Plugin plugin;
-    private final Map<String, List<CoreAbility>> groups;
-    private final Map<String, CoreAbility> abilityConversions;
+    private final CollisionRegistry registry;
 
-    public CollisionLoader(Plugin plugin) {
-        this.plugin = plugin;
-        groups = new HashMap<>();
-
-        // Some Abilities in PK share names, which makes it impossible for us to retrieve
-        // the CoreAbility we want, so we will provide some alternate ways of referring
-        // to these classes
-        abilityConversions = new HashMap<>();
-        abilityConversions.put("FireBlast", CoreAbility.getAbility(FireBlast.class));
-        abilityConversions.put("FireBlastCharged", CoreAbility.getAbility(FireBlastCharged.class));
-        abilityConversions.put("ChargedFireBlast", CoreAbility.getAbility(FireBlastCharged.class));
-        abilityConversions.put("CFB", CoreAbility.getAbility(FireBlastCharged.class));
-        abilityConversions.put("IceSpikeBlast", CoreAbility.getAbility(IceSpikeBlast.class));
-        abilityConversions.put("IceSpike", CoreAbility.getAbility(IceSpikePillar.class));
-        abilityConversions.put("WaterSpout", CoreAbility.getAbility(WaterSpout.class));
-        abilityConversions.put("WaterWave", CoreAbility.getAbility(WaterSpoutWave.class));
-        abilityConversions.put("WaterSpoutWave", CoreAbility.getAbility(WaterSpoutWave.class));
-        abilityConversions.put("Torrent", CoreAbility.getAbility(Torrent.class));
-        abilityConversions.put("TorrentWave", CoreAbility.getAbility(TorrentWave.class));
-        abilityConversions.put("TorrentRing", CoreAbility.getAbility(TorrentWave.class));
-        abilityConversions.put("Surge", CoreAbility.getAbility(SurgeWave.class));
-        abilityConversions.put("SurgeWave", CoreAbility.getAbility(SurgeWave.class));
-        abilityConversions.put("SurgeWall", CoreAbility.getAbility(SurgeWall.class));
-        abilityConversions.put("SurgeShield", CoreAbility.getAbility(SurgeWall.class));
-    }
+    private final boolean doVerbose;
+    private final boolean disableCoreCollisions;
+    private final boolean compactLexer;
+    private final boolean reportRedundant;
+    private final boolean dropRedundant;
+    private final File file;
+    private final File directory;
+    private final int loadThreads;
+    private final AbilityLookup abilities;
+    private final CollisionCache cache;
+    private final String configString;
+    private final LoadMetrics metrics;
+    private boolean hasErrors;
 
     /**
-     * Parses the collisions file and loads them into ProjectKorra
+     * Creates a new loader for the plugin's collisions file. The configuration and the
+     * registered abilities are captured here, so this should be called from the main thread.
+     *
+     * @param plugin the Plugin whose configuration and data folder are used
+     * @param registry the CollisionRegistry tracking collisions from previous loads
      */
-    public void loadCollisions() {
+    public CollisionLoader(Plugin plugin, CollisionRegistry registry) {
+        this.plugin = plugin;
+        this.registry = registry;
+        metrics = new LoadMetrics();
+
         FileConfiguration config = plugin.getConfig();
         doVerbose = config.getBoolean("Properties.Verbose", false);
-        if (config.getBoolean("Properties.DisableCoreCollisions", false)) {
-            plugin.getLogger().log(Level.INFO, "Clearing out core collisions... ");
-            ProjectKorra.getCollisionManager().getCollisions().clear();
+        disableCoreCollisions = config.getBoolean("Properties.DisableCoreCollisions", false);
+        compactLexer = config.getBoolean("Properties.CompactLexer", false);
+        reportRedundant = config.getBoolean("Properties.ReportRedundantRules", false);
+        dropRedundant = config.getBoolean("Properties.DropRedundantRules", false);
+        String fileName = config.getString("Properties.CollisionFile", "collisions.txt");
+        file = new File(plugin.getDataFolder() + File.separator + fileName);
+        String directoryName = config.getString("Properties.CollisionDirectory", "collisions");
+        directory = new File(plugin.getDataFolder() + File.separator + directoryName);
+        loadThreads = config.getInt("Properties.LoadThreads", 0);
+        long start = System.nanoTime();
+        abilities = AbilityLookup.capture(config.getBoolean("Properties.CaseInsensitiveNames", false));
+        metrics.addStage("Ability capture", System.nanoTime() - start);
+        metrics.setCount("Abilities", abilities.getSymbols().size());
+
+        if (config.getBoolean("Properties.CacheCompiledCollisions", true)) {
+            Path cachePath = plugin.getDataFolder().toPath().resolve("cache").resolve("collisions.bin");
+            cache = new CollisionCache(cachePath, plugin.getLogger());
+        } else {
+            cache = null;
         }
+        configString = config.saveToString();
+    }
 
+    /**
+     * Reads, parses, and resolves the collisions file and the files of the collisions
+     * directory. If the files, configuration, and registered abilities are unchanged since
+     * the last compile without errors, the cached table is used instead. This does not touch ProjectKorra
+     * or Bukkit, and is safe to call off the main thread.
+     *
+     * @return the compiled CollisionTable
+     */
+    public CollisionTable compile() {
         plugin.getLogger().log(Level.INFO, "Initializing Collisions...");
 
-        String fileName = config.getString("Properties.CollisionFile", "collisions.txt");
-        File file = new File(plugin.getDataFolder() + File.separator + fileName);
-        List<Token> tokens = new Lexer(file, plugin.getLogger()).readTokens();
-        List<Expression> expressions = new Parser(tokens, plugin.getLogger()).parseExpressions();
-
-        for (Expression expression : expressions) {
-            if (expression instanceof GroupDeclaration groupDeclaration) {
-                loadGroup(groupDeclaration);
-            } else if (expression instanceof CollisionDeclaration collisionDeclaration) {
-                loadCollision(collisionDeclaration);
+        AbilitySymbolTable symbols = abilities.getSymbols();
+        hasErrors = !file.isFile();
+        RuleFileReader reader = new RuleFileReader(file, directory, compactLexer, plugin.getLogger());
+        byte[] cacheKey = null;
+        if (cache != null && file.isFile()) {
+            try {
+                long start = System.nanoTime();
+                Map<String, byte[]> sources = new LinkedHashMap<>();
+                long bytes = 0;
+                Path dataFolder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+                for (Path path : reader.getFiles()) {
+                    byte[] source = Files.readAllBytes(path);
+                    sources.put(dataFolder.relativize(path).toString(), source);
+                    bytes += source.length;
+                }
+                metrics.addStage("Read", System.nanoTime() - start);
+                metrics.setCount("Bytes", bytes);
+
+                start = System.nanoTime();
+                cacheKey = CollisionCache.key(sources, configString, symbols);
+                CollisionCache.Entry cached = cache.read(cacheKey, symbols);
+                metrics.addStage("Cache lookup", System.nanoTime() - start);
+                if (cached != null) {
+                    plugin.getLogger().log(Level.INFO, "Collisions file is unchanged, using the cached collisions");
+                    // The files still have the same problems, so they are reported on every load
+                    if (reportRedundant || dropRedundant) {
+                        metrics.setCount("Findings", cached.findings().size());
+                        metrics.setCount("Dropped declarations", cached.droppedDeclarations());
+                        reportFindings(cached.findings(), cached.droppedDeclarations());
+                    }
+                    metrics.setCount("Warnings", cached.diagnostics().size());
+                    reportDiagnostics(cached.diagnostics());
+                    countTable(cached.table());
+                    return cached.table();
+                }
+            } catch (IOException e) {
+                // The lexer will report the file as unreadable below
+                cacheKey = null;
             }
         }
-        plugin.getLogger().log(Level.INFO, "Finished Initializing Collisions");
+
+        // Every file is lexed and parsed on its own worker, then compiled in a fixed order
+        long start = System.nanoTime();
+        RuleFileReader.Result parsed = reader.read(loadThreads);
+        metrics.addStage("Lex and parse", System.nanoTime() - start);
+
+        CollisionCompiler compiler = new CollisionCompiler(symbols);
+        if (reportRedundant || dropRedundant) {
+            compiler.enableAnalysis(dropRedundant);
+        }
+        CollisionTable table = compiler.compile(parsed.expressions());
+        metrics.addStage("Group resolution", compiler.getGroupResolutionNanos());
+        if (reportRedundant || dropRedundant) {
+            metrics.addStage("Analysis", compiler.getAnalysisNanos());
+            metrics.setCount("Findings", compiler.getFindings().size());
+            metrics.setCount("Dropped declarations", compiler.getDroppedDeclarations());
+            reportFindings(compiler.getFindings(), compiler.getDroppedDeclarations());
+        }
+        metrics.addStage("Pair expansion", compiler.getExpansionNanos());
+        metrics.setCount("Files", parsed.fileCount());
+        metrics.setCount("Tokens", parsed.tokenCount());
+        metrics.setCount("Expressions", parsed.expressionCount());
+        metrics.setCount("Parse errors", parsed.errorCount());
+        hasErrors |= parsed.errorCount() > 0;
+        List<Diagnostic> diagnostics = new ArrayList<>(parsed.diagnostics());
+        diagnostics.addAll(compiler.getDiagnostics());
+        metrics.setCount("Warnings", diagnostics.size() - parsed.errorCount());
+        reportDiagnostics(diagnostics);
+        metrics.setCount("Groups", compiler.getGroupCount());
+        metrics.setCount("Expanded pairs", compiler.getExpandedPairs());
+        countTable(table);
+
+        // A table with parse errors must never be reused, or a reload of the same broken
+        // files would hit the cache and replace the last good collisions with it
+        if (cacheKey != null && !hasErrors) {
+            start = System.nanoTime();
+            cache.write(cacheKey, new CollisionCache.Entry(table, diagnostics, compiler.getFindings(),
+                    compiler.getDroppedDeclarations()), symbols);
+            metrics.addStage("Cache write", System.nanoTime() - start);
+        }
+        return table;
     }
 
     /**
-     * Loads an ability grouping from a GroupDeclaration object
-     * @param groupDeclaration the object from which to load
+     * Logs what the analysis found. Every finding is logged when verbose, otherwise only
+     * the first few are.
      */
-    private void loadGroup(GroupDeclaration groupDeclaration) {
-        if (groupDeclaration.groupName().isEmpty()) {
-            groups.put(groupDeclaration.groupName(), Collections.emptyList());
+    private void reportFindings(List<RuleFinding> findings, int dropped) {
+        if (findings.isEmpty()) {
             return;
         }
-
-        List<CoreAbility> abilities = groupDeclaration.operands().stream()
-                .flatMap(operand -> getAbilities(operand).stream())
-                .collect(Collectors.toList());
-        groups.put(groupDeclaration.groupName(), abilities);
+        int shown = doVerbose ? findings.size() : Math.min(findings.size(), MAX_REPORTED_FINDINGS);
+        for (int i = 0; i < shown; i++) {
+            plugin.getLogger().log(Level.INFO, findings.get(i).message());
+        }
+        if (shown < findings.size()) {
+            plugin.getLogger().log(Level.INFO, "... and " + (findings.size() - shown)
+                    + " more, enable Verbose to see every finding");
+        }
+        plugin.getLogger().log(Level.INFO, "Found " + findings.size() + " redundant or conflicting declarations"
+                + (dropRedundant ? ", " + dropped + " declarations were skipped" : ""));
     }
 
     /**
-     * Gets all abilities from an operand, regardless of if it is a group
-     * reference or a single ability name.
-     *<p>
-     * It is important to note that this operates on a single-pass system,
-     * meaning that groups cannot be referenced on a line before they are
-     * declared.
-     *<p>
-     * We treat even single abilities as a list for simplicity. Performance
-     * is not super important given the time the plugin runs
-     *
-     * @param operand the Operand from which the Abilities are derived
-     * @return a List of CoreAbilities
+     * Logs every diagnostic as a single message, starting with a summary of the most
+     * common kinds of problem. Every diagnostic is listed when verbose, otherwise only
+     * the first few are.
      */
-    private List<CoreAbility> getAbilities(Operand operand) {
-        if (!operand.isGroupReference()) {
-            CoreAbility ability = stringToAbility(operand.literal());
-            if (ability == null) {
-                plugin.getLogger().warning("Could not find ability with the name: "
-                        + operand.literal() + " on line: " + operand.lineNumber());
-                return Collections.emptyList();
+    private void reportDiagnostics(List<Diagnostic> diagnostics) {
+        if (diagnostics.isEmpty()) {
+            return;
+        }
+        int errors = 0;
+        Map<String, Integer> kinds = new HashMap<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            if (diagnostic.severity() == Diagnostic.Severity.ERROR) {
+                errors++;
             }
-            return Collections.singletonList(ability);
+            kinds.merge(diagnostic.expected(), 1, Integer::sum);
         }
+        StringBuilder report = new StringBuilder("Found ").append(errors).append(" errors and ")
+                .append(diagnostics.size() - errors).append(" warnings in the collision files, most often expected:");
+        kinds.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(SUMMARIZED_KINDS)
+                .forEach(kind -> report.append("\n  ").append(kind.getValue()).append("x ").append(kind.getKey()));
 
-        if (!groups.containsKey(operand.literal())) {
-            plugin.getLogger().warning("Could not find a group with the name: "
-                    + operand.literal() + " on line: " + operand.lineNumber());
-            return Collections.emptyList();
+        diagnostics.sort(Diagnostic.POSITION_ORDER);
+        int shown = doVerbose ? diagnostics.size() : Math.min(diagnostics.size(), MAX_REPORTED_DIAGNOSTICS);
+        for (int i = 0; i < shown; i++) {
+            report.append('\n').append(diagnostics.get(i).message());
         }
-        return groups.get(operand.literal());
+        if (shown < diagnostics.size()) {
+            report.append("\n... and ").append(diagnostics.size() - shown)
+                    .append(" more, enable Verbose to see every problem");
+        }
+        plugin.getLogger().log(Level.WARNING, report.toString());
+    }
+
+    private void countTable(CollisionTable table) {
+        metrics.setCount("Rules", table.getRules().size());
+        metrics.setCount("Cancelled pairs", table.getRemovals().size());
     }
 
     /**
-     * Converts a case-sensitive string to a CoreAbility. This method will return null
-     * if an Ability could not be found.
-     *
-     * @param abilityName the String ability name
-     * @return a CoreAbility, or null if one couldn't be found
+     * @return true if the last compile could not read the collisions file, or found lines
+     * or includes that could not be parsed
      */
-    private CoreAbility stringToAbility(String abilityName) {
-        return abilityConversions.getOrDefault(abilityName, CoreAbility.getAbility(abilityName));
+    public boolean hasErrors() {
+        return hasErrors;
     }
 
-    private void loadCollision(CollisionDeclaration collisionDeclaration) {
-        List<CoreAbility> abilitiesFirst = getAbilities(collisionDeclaration.leftOperand());
-        TokenType operator = collisionDeclaration.operator().type();
-        List<CoreAbility> abilitiesSecond = getAbilities(collisionDeclaration.rightOperand());
+    /**
+     * @return the timings and counts recorded by this loader so far
+     */
+    public LoadMetrics getMetrics() {
+        return metrics;
+    }
 
-        for (CoreAbility first : abilitiesFirst) {
-            for (CoreAbility second : abilitiesSecond) {
-                setUpCollision(first, operator, second);
+    /**
+     * Registers a compiled table with ProjectKorra. This must be called from the main thread.
+     *
+     * @param table the CollisionTable produced by {@link #compile()}
+     */
+    public void apply(CollisionTable table) {
+        if (disableCoreCollisions) {
+            plugin.getLogger().log(Level.INFO, "Clearing out core collisions... ");
+            // Our own collisions are kept so that they can be diffed against below
+            long start = System.nanoTime();
+            int removed = registry.removeForeign();
+            metrics.addStage("Core removal", System.nanoTime() - start);
+            metrics.setCount("Core collisions removed", removed);
+        }
+
+        // A pair can be cancelled and then declared again further down the file, in which
+        // case our own collision stays registered and only foreign ones are removed
+        long start = System.nanoTime();
+        ReloadDiff diff = registry.apply(table, abilities, this::setUpCollision);
+        metrics.addStage("Registration", System.nanoTime() - start);
+        metrics.setCount("Added", diff.added().size());
+        metrics.setCount("Changed", diff.changed().size());
+        metrics.setCount("Removed", diff.removed().size());
+        metrics.setCount("Unchanged", diff.unchanged());
+
+        start = System.nanoTime();
+        removeCollisions(table.getRemovals());
+        metrics.addStage("Removals", System.nanoTime() - start);
+        if (doVerbose) {
+            for (Collision collision : diff.added()) {
+                logRegistration("Registering", collision);
+            }
+            for (Collision collision : diff.changed()) {
+                logRegistration("Updating", collision);
+            }
+            for (AbilityPair pair : diff.removed()) {
+                plugin.getLogger().log(Level.INFO, "Unregistering Collision between: "
+                        + pair.first().getName() + " and " + pair.second().getName());
             }
         }
+        metrics.setCount("Registered", registry.size());
+
+        start = System.nanoTime();
+        CollisionRules rules = CollisionRules.capture(abilities, ProjectKorra.getCollisionManager().getCollisions());
+        CollisionRules.publish(rules);
+        metrics.addStage("Rule snapshot", System.nanoTime() - start);
+        metrics.setCount("Published pairs", rules.size());
+        plugin.getLogger().log(Level.INFO, "Finished Initializing Collisions, "
+                + diff.changedPairs() + " pairs changed (" + diff + "), "
+                + registry.size() + " registered in " + LoadMetrics.formatMillis(metrics.getTotalNanos()));
     }
 
     /**
-     * Sets up a collision between the two provided CoreAbilities, and registers it
-     * with ProjectKorra.
+     * Sets up a collision from a compiled rule, ready to be registered with ProjectKorra.
      *
-     * @param first the Ability on the left-hand side of the expression
-     * @param operator the Operator dictating which abilities are removed
-     * @param second the Ability on the right-hand side of the expression
+     * @param rule the CollisionRule describing the operator
+     * @param pair the abilities the rule's ids are bound to, in declaration order
+     * @return the Collision to register
      */
-    private void setUpCollision(CoreAbility first, TokenType operator, CoreAbility second) {
-       if (operator == TokenType.X) {
-           removeCollision(first, second);
-           if (doVerbose) {
-               plugin.getLogger().log(Level.INFO, "Removing collision between: "
-                       + first.getName() + " and " + second.getName());
-           }
-           return;
-       }
-
-       // Default operator in this case is ~
-       boolean removeFirst = switch (operator) {
-           case LESS_THAN, EQUAL -> true;
-           default -> false;
-       };
-       boolean removeSecond = switch (operator) {
-           case GREATER_THAN, EQUAL -> true;
-           default -> false;
-       };
-
-       Collision collision = new Collision(first, second, removeFirst, removeSecond);
-       ProjectKorra.getCollisionManager().addCollision(collision);
-       if (doVerbose) {
-           plugin.getLogger().log(Level.INFO, "Registering Collision between: "
-                   + first.getName() + " and " + second.getName() + " RemoveFirst: "
-                   + removeFirst + " RemoveSecond: " + removeSecond);
-       }
+    private Collision setUpCollision(CollisionRule rule, AbilityPair pair) {
+        return new Collision(pair.first(), pair.second(), rule.removeFirst(), rule.removeSecond());
+    }
+
+    private void logRegistration(String action, Collision collision) {
+        plugin.getLogger().log(Level.INFO, action + " Collision between: "
+                + collision.getAbilityFirst().getName() + " and " + collision.getAbilitySecond().getName()
+                + " RemoveFirst: " + collision.isRemovingFirst() + " RemoveSecond: " + collision.isRemovingSecond());
     }
 
     /**
-     * Removes a collision from the collision manager where the ability pair matches
-     * the provided abilities. This method does not respect the order of the collision.
+     * Removes every collision from the collision manager whose ability pair is in the
+     * provided set. This method does not respect the order of the collision.
+     *<p>
+     * All pairs are removed in a single pass over the registered collisions, rather
+     * than one pass per pair.
      *
-     * @param first  a CoreAbility that makes up part of the Collision pair
-     * @param second a CoreAbility that makes up part of the Collision pair
+     * @param pairs the keys of the unordered ability pairs that should no longer collide
      */
-    private void removeCollision(CoreAbility first, CoreAbility second) {
+    private void removeCollisions(Set<Long> pairs) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        if (doVerbose) {
+            for (long pair : pairs) {
+                plugin.getLogger().log(Level.INFO, "Removing collision between: "
+                        + abilities.getAbility(CollisionTable.firstOf(pair)).getName() + " and "
+                        + abilities.getAbility(CollisionTable.secondOf(pair)).getName());
+            }
+        }
+
         // just setting removeFirst and removeSecond doesn't seem to work, so we have
         // to do this weird iteration
-        ProjectKorra.getCollisionManager().getCollisions().removeIf(collision -> {
-            CoreAbility collisionFirst = collision.getAbilityFirst();
-            CoreAbility collisionSecond = collision.getAbilitySecond();
-            return ((collisionFirst.equals(first) && collisionSecond.equals(second))
-                    || (collisionSecond.equals(first) && collisionFirst.equals(second)));
-        });
+        int removed = registry.removeForeign(pairs, abilities);
+        metrics.setCount("Cancelled collisions removed", removed);
+        plugin.getLogger().log(Level.INFO, "Removed " + removed
+                + " collisions for " + pairs.size() + " cancelled pairs");
     }
 }
@@ -0,0 +1,256 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ProjectKorra;
+import com.projectkorra.projectkorra.ability.CoreAbility;
+import com.projectkorra.projectkorra.ability.util.Collision;
+
+import me.kwilson272.collisionutility.compiler.CollisionRule;
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps track of the collisions CollisionUtility has registered with ProjectKorra,
+ * so that they can be retracted again without touching anything other plugins added.
+ *<p>
+ * Owned collisions are keyed by their ability pair, which lets a new table be applied
+ * as a diff against the previous one. Ability ids are only stable for a single load,
+ * so pairs are always compared through the abilities they are bound to.
+ *<p>
+ * Each owned collision also remembers the file and line it was declared on, and the
+ * priority and interval it was declared with.
+ */
+public class CollisionRegistry {
+
+    private final Map<AbilityPair, Entry> owned;
+
+    public CollisionRegistry() {
+        owned = new HashMap<>();
+    }
+
+    /**
+     * Brings ProjectKorra's collisions in line with the provided table, only adding,
+     * replacing, or removing the pairs that differ from what is currently owned.
+     *
+     * @param table the newly compiled CollisionTable
+     * @param abilities the AbilityLookup the table was compiled against
+     * @param factory creates the Collision to register for a rule and its bound abilities
+     * @return a ReloadDiff describing the changes that were made
+     */
+    public ReloadDiff apply(CollisionTable table, AbilityLookup abilities,
+                            BiFunction<CollisionRule, AbilityPair, Collision> factory) {
+        pruneMissing();
+
+        Map<AbilityPair, CollisionRule> rules = new HashMap<>();
+        for (CollisionRule rule : table.getRules()) {
+            rules.put(new AbilityPair(abilities.getAbility(rule.first()), abilities.getAbility(rule.second())), rule);
+        }
+
+        // Collisions don't define equality, but we only care about our own instances anyway
+        Set<Collision> retracted = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Collision> registered = new ArrayList<>();
+        List<Collision> added = new ArrayList<>();
+        List<Collision> changed = new ArrayList<>();
+        List<AbilityPair> removed = new ArrayList<>();
+        int unchanged = 0;
+
+        Iterator<Map.Entry<AbilityPair, Entry>> iterator = owned.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<AbilityPair, Entry> mapEntry = iterator.next();
+            if (!rules.containsKey(mapEntry.getKey())) {
+                retracted.add(mapEntry.getValue().collision());
+                removed.add(mapEntry.getKey());
+                iterator.remove();
+            }
+        }
+
+        for (CollisionRule rule : table.getRules()) {
+            AbilityPair pair = new AbilityPair(abilities.getAbility(rule.first()), abilities.getAbility(rule.second()));
+            Entry previous = owned.get(pair);
+            if (previous != null && isEquivalent(previous.collision(), pair, rule)) {
+                // The declaration may still have moved to another line or changed its modifiers
+                owned.put(pair, new Entry(previous.collision(), rule.source(), rule.lineNumber(),
+                        rule.priority(), rule.interval()));
+                unchanged++;
+                continue;
+            }
+
+            Collision collision = factory.apply(rule, pair);
+            if (previous == null) {
+                added.add(collision);
+            } else {
+                retracted.add(previous.collision());
+                changed.add(collision);
+            }
+            registered.add(collision);
+            owned.put(pair, new Entry(collision, rule.source(), rule.lineNumber(), rule.priority(), rule.interval()));
+        }
+
+        List<Collision> collisions = ProjectKorra.getCollisionManager().getCollisions();
+        if (!retracted.isEmpty()) {
+            collisions.removeIf(retracted::contains);
+        }
+        // CollisionManager#addCollision only adds null checks which the compiler
+        // already guarantees
+        collisions.addAll(registered);
+        return new ReloadDiff(added, changed, removed, unchanged);
+    }
+
+    /**
+     * Removes every collision that this registry does not own from ProjectKorra.
+     *
+     * @return the number of collisions that were removed
+     */
+    public int removeForeign() {
+        Set<Collision> ownedCollisions = ownedCollisions();
+        Collection<Collision> collisions = ProjectKorra.getCollisionManager().getCollisions();
+        int sizeBefore = collisions.size();
+        collisions.removeIf(collision -> !ownedCollisions.contains(collision));
+        return sizeBefore - collisions.size();
+    }
+
+    /**
+     * Removes every collision that this registry does not own from ProjectKorra where
+     * the ability pair is in the provided set, in a single pass.
+     *
+     * @param pairKeys the keys of the unordered ability pairs to remove
+     * @param abilities the AbilityLookup the keys were compiled against
+     * @return the number of collisions that were removed
+     */
+    public int removeForeign(Set<Long> pairKeys, AbilityLookup abilities) {
+        Set<AbilityPair> pairs = new HashSet<>();
+        for (long pairKey : pairKeys) {
+            pairs.add(new AbilityPair(abilities.getAbility(CollisionTable.firstOf(pairKey)),
+                    abilities.getAbility(CollisionTable.secondOf(pairKey))));
+        }
+
+        Collection<Collision> collisions = ProjectKorra.getCollisionManager().getCollisions();
+        int sizeBefore = collisions.size();
+        collisions.removeIf(collision -> {
+            AbilityPair pair = new AbilityPair(collision.getAbilityFirst(), collision.getAbilitySecond());
+            Entry entry = owned.get(pair);
+            return pairs.contains(pair) && (entry == null || entry.collision() != collision);
+        });
+        return sizeBefore - collisions.size();
+    }
+
+    /**
+     * Removes every collision this registry owns from ProjectKorra in a single pass.
+     *
+     * @return the number of collisions that were removed
+     */
+    public int retractAll() {
+        if (owned.isEmpty()) {
+            return 0;
+        }
+        Set<Collision> ownedCollisions = ownedCollisions();
+        Collection<Collision> collisions = ProjectKorra.getCollisionManager().getCollisions();
+        int sizeBefore = collisions.size();
+        collisions.removeIf(ownedCollisions::contains);
+        owned.clear();
+        return sizeBefore - collisions.size();
+    }
+
+    /**
+     * Gets the name of the collisions file that a registered collision was declared in.
+     *
+     * @param collision the Collision registered with ProjectKorra
+     * @return the name of the file, or null if the collision is not owned by this registry
+     * or the file is unknown
+     */
+    public String getSource(Collision collision) {
+        Entry entry = owned.get(new AbilityPair(collision.getAbilityFirst(), collision.getAbilitySecond()));
+        return entry != null && entry.collision() == collision ? entry.source() : null;
+    }
+
+    /**
+     * Gets the line of its collisions file that a registered collision was declared on.
+     *
+     * @param collision the Collision registered with ProjectKorra
+     * @return the line number, or -1 if the collision is not owned by this registry
+     */
+    public int getLineNumber(Collision collision) {
+        Entry entry = owned.get(new AbilityPair(collision.getAbilityFirst(), collision.getAbilitySecond()));
+        return entry != null && entry.collision() == collision ? entry.lineNumber() : -1;
+    }
+
+    /**
+     * Gets the priority a registered collision was declared with.
+     *
+     * @param collision the Collision registered with ProjectKorra
+     * @return the priority, or 0 if the collision is not owned by this registry
+     */
+    public int getPriority(Collision collision) {
+        Entry entry = owned.get(new AbilityPair(collision.getAbilityFirst(), collision.getAbilitySecond()));
+        return entry != null && entry.collision() == collision ? entry.priority() : 0;
+    }
+
+    /**
+     * Gets the number of ticks between checks a registered collision was declared with.
+     *
+     * @param collision the Collision registered with ProjectKorra
+     * @return the interval, or 1 if the collision is not owned by this registry
+     */
+    public int getInterval(Collision collision) {
+        Entry entry = owned.get(new AbilityPair(collision.getAbilityFirst(), collision.getAbilitySecond()));
+        return entry != null && entry.collision() == collision ? entry.interval() : 1;
+    }
+
+    /**
+     * @return the number of collisions currently owned
+     */
+    public int size() {
+        return owned.size();
+    }
+
+    /**
+     * Forgets any owned collision that is no longer registered with ProjectKorra, which
+     * happens if ProjectKorra rebuilds its collisions during a reload. Those pairs are
+     * then treated as new by the next diff.
+     */
+    private void pruneMissing() {
+        if (owned.isEmpty()) {
+            return;
+        }
+        Set<Collision> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        present.addAll(ProjectKorra.getCollisionManager().getCollisions());
+        owned.values().removeIf(entry -> !present.contains(entry.collision()));
+    }
+
+    /**
+     * Checks if a registered collision has the same outcome as a rule, regardless of
+     * which side each ability was declared on.
+     */
+    private boolean isEquivalent(Collision collision, AbilityPair pair, CollisionRule rule) {
+        CoreAbility first = pair.first();
+        if (collision.getAbilityFirst() == first) {
+            return collision.isRemovingFirst() == rule.removeFirst()
+                    && collision.isRemovingSecond() == rule.removeSecond();
+        }
+        return collision.isRemovingFirst() == rule.removeSecond()
+                && collision.isRemovingSecond() == rule.removeFirst();
+    }
+
+    private Set<Collision> ownedCollisions() {
+        Set<Collision> collisions = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry entry : owned.values()) {
+            collisions.add(entry.collision());
+        }
+        return collisions;
+    }
+
+    /**
+     * A registered collision, the file and line it was declared on, and its modifiers.
+     */
+    private record Entry(Collision collision, String source, int lineNumber, int priority, int interval) {}
+}
@@ -0,0 +1,192 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ability.CoreAbility;
+import com.projectkorra.projectkorra.ability.util.Collision;
+
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+import me.kwilson272.collisionutility.compiler.PairIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of which abilities collide, for other plugins to query from
+ * any thread.
+ *<p>
+ * A new snapshot is published after every load of the collisions file, and replaces
+ * the previous one in a single write. It covers every collision registered with
+ * ProjectKorra at that point, including those of ProjectKorra itself and other addons.
+ * Lookups never lock or allocate.
+ *<p>
+ * Ability ids are only valid for the snapshot they were taken from, so hold on to one
+ * snapshot while working with its ids:
+ * <pre>{@code
+ * CollisionRules rules = CollisionRules.current();
+ * int outcome = rules.getOutcome(rules.getId(ability), rules.getId(other));
+ * if ((outcome & CollisionRules.REMOVES_FIRST) != 0) ...
+ * }</pre>
+ */
+public final class CollisionRules {
+
+    /**
+     * Set in an outcome when the two abilities collide.
+     */
+    public static final int COLLIDES = PairIndex.COLLIDES;
+    /**
+     * Set in an outcome when the first ability of the lookup is removed by the collision.
+     */
+    public static final int REMOVES_FIRST = PairIndex.REMOVES_FIRST;
+    /**
+     * Set in an outcome when the second ability of the lookup is removed by the collision.
+     */
+    public static final int REMOVES_SECOND = PairIndex.REMOVES_SECOND;
+
+    private static final CollisionRules EMPTY = new CollisionRules(AbilitySymbolTable.builder(false).build(),
+            Map.of(), PairIndex.empty(), 0);
+
+    private static volatile CollisionRules current = EMPTY;
+
+    private final AbilitySymbolTable symbols;
+    private final Map<Class<?>, Integer> typeIds;
+    private final PairIndex pairs;
+    private final int generation;
+
+    private CollisionRules(AbilitySymbolTable symbols, Map<Class<?>, Integer> typeIds, PairIndex pairs,
+                           int generation) {
+        this.symbols = symbols;
+        this.typeIds = typeIds;
+        this.pairs = pairs;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the most recently published snapshot, which is empty until the collisions
+     * file has been loaded for the first time
+     */
+    public static CollisionRules current() {
+        return current;
+    }
+
+    /**
+     * Captures every collision currently registered with ProjectKorra. This should be
+     * called from the main thread.
+     *
+     * @param abilities the AbilityLookup of the load being published
+     * @param collisions the collisions registered with ProjectKorra
+     * @return the new snapshot, which still has to be published
+     */
+    static CollisionRules capture(AbilityLookup abilities, List<Collision> collisions) {
+        // ProjectKorra matches instances to collisions by class, so ids are looked up the same way
+        Map<Class<?>, Integer> typeIds = new HashMap<>();
+        AbilitySymbolTable symbols = abilities.getSymbols();
+        for (int id = 0; id < symbols.size(); id++) {
+            typeIds.putIfAbsent(abilities.getAbility(id).getClass(), id);
+        }
+
+        PairIndex.Builder builder = PairIndex.builder();
+        for (Collision collision : collisions) {
+            Integer first = typeIds.get(collision.getAbilityFirst().getClass());
+            Integer second = typeIds.get(collision.getAbilitySecond().getClass());
+            if (first != null && second != null) {
+                builder.add(first, second, collision.isRemovingFirst(), collision.isRemovingSecond());
+            }
+        }
+        return new CollisionRules(symbols, Map.copyOf(typeIds), builder.build(), current.generation + 1);
+    }
+
+    /**
+     * Makes a snapshot visible to every thread.
+     */
+    static void publish(CollisionRules rules) {
+        current = rules;
+    }
+
+    /**
+     * Goes back to the empty snapshot, for when the plugin is disabled.
+     */
+    static void clear() {
+        current = EMPTY;
+    }
+
+    /**
+     * @param ability a registered ability or any live instance of one
+     * @return the id of the ability's type, or {@link AbilitySymbolTable#UNKNOWN} if it
+     * was not registered when the snapshot was taken
+     */
+    public int getId(CoreAbility ability) {
+        return typeIds.getOrDefault(ability.getClass(), AbilitySymbolTable.UNKNOWN);
+    }
+
+    /**
+     * Resolves a name the same way the collisions file does, including aliases. Resolve
+     * names once and keep the ids, as the first lookup of a name may allocate.
+     *
+     * @param name the name or alias of an ability
+     * @return the id of the ability, or {@link AbilitySymbolTable#UNKNOWN} if there is none
+     */
+    public int getId(String name) {
+        return symbols.resolve(name);
+    }
+
+    /**
+     * @param first the id of the first ability
+     * @param second the id of the second ability
+     * @return the {@link #COLLIDES}, {@link #REMOVES_FIRST}, and {@link #REMOVES_SECOND}
+     * flags for the pair in the order passed in, or 0 if the abilities don't collide
+     */
+    public int getOutcome(int first, int second) {
+        return pairs.outcome(first, second);
+    }
+
+    /**
+     * @param first the first ability or instance
+     * @param second the second ability or instance
+     * @return the outcome flags for the pair in the order passed in, see {@link #getOutcome(int, int)}
+     */
+    public int getOutcome(CoreAbility first, CoreAbility second) {
+        return pairs.outcome(getId(first), getId(second));
+    }
+
+    /**
+     * @return true if the abilities collide
+     */
+    public boolean collides(int first, int second) {
+        return (pairs.outcome(first, second) & COLLIDES) != 0;
+    }
+
+    /**
+     * @return true if the abilities collide
+     */
+    public boolean collides(CoreAbility first, CoreAbility second) {
+        return (getOutcome(first, second) & COLLIDES) != 0;
+    }
+
+    /**
+     * @return true if the first ability is removed when it collides with the second
+     */
+    public boolean removesFirst(CoreAbility first, CoreAbility second) {
+        return (getOutcome(first, second) & REMOVES_FIRST) != 0;
+    }
+
+    /**
+     * @return true if the second ability is removed when it collides with the first
+     */
+    public boolean removesSecond(CoreAbility first, CoreAbility second) {
+        return (getOutcome(first, second) & REMOVES_SECOND) != 0;
+    }
+
+    /**
+     * @return the number of colliding ability pairs
+     */
+    public int size() {
+        return pairs.size();
+    }
+
+    /**
+     * @return a number that goes up by one with every published snapshot
+     */
+    public int getGeneration() {
+        return generation;
+    }
+}
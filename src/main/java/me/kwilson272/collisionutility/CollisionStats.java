@@ -0,0 +1,211 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ability.util.Collision;
+
+import me.kwilson272.collisionutility.detection.RuleCounters;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates how often each registered collision was checked by the
+ * {@link CollisionEngine}, how often it hit, and how long checking it took.
+ */
+public class CollisionStats {
+
+    private Map<Collision, PairStats> byCollision;
+    private PairStats[] byRule;
+    private long rounds;
+
+    public CollisionStats() {
+        byCollision = new IdentityHashMap<>();
+        byRule = new PairStats[0];
+    }
+
+    /**
+     * Lines the counters up with the rules the engine is detecting with. Counters for
+     * collisions that are no longer registered are dropped.
+     *
+     * @param ruleCollisions the registered collisions, indexed by rule number
+     * @param registry the CollisionRegistry used to find the file and line of each collision
+     */
+    public void bind(Collision[] ruleCollisions, CollisionRegistry registry) {
+        Map<Collision, PairStats> current = new IdentityHashMap<>();
+        byRule = new PairStats[ruleCollisions.length];
+        for (int rule = 0; rule < ruleCollisions.length; rule++) {
+            Collision collision = ruleCollisions[rule];
+            PairStats pair = byCollision.get(collision);
+            if (pair == null) {
+                pair = new PairStats(collision.getAbilityFirst().getName(), collision.getAbilitySecond().getName());
+            }
+            pair.source = registry.getSource(collision);
+            pair.lineNumber = registry.getLineNumber(collision);
+            current.put(collision, pair);
+            byRule[rule] = pair;
+        }
+        byCollision = current;
+    }
+
+    /**
+     * Adds the counters from a single round of detection.
+     *
+     * @param counters the RuleCounters filled by the detector
+     */
+    public void record(RuleCounters counters) {
+        for (int i = 0; i < counters.touchedCount(); i++) {
+            int rule = counters.touchedRule(i);
+            PairStats pair = byRule[rule];
+            pair.checks += counters.checks(rule);
+            pair.hits += counters.hits(rule);
+            pair.nanos += counters.nanos(rule);
+        }
+        rounds++;
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+    public void reset() {
+        for (PairStats pair : byCollision.values()) {
+            pair.checks = 0;
+            pair.hits = 0;
+            pair.nanos = 0;
+        }
+        rounds = 0;
+    }
+
+    /**
+     * @return the number of detection rounds recorded since the last reset
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return every registered pair, most expensive first
+     */
+    public List<PairStats> getPairs() {
+        List<PairStats> pairs = new ArrayList<>(byCollision.values());
+        pairs.sort(Comparator.comparingLong(PairStats::getNanos).reversed());
+        return pairs;
+    }
+
+    /**
+     * Sums up the pairs declared on each line of the collisions files. Collisions that
+     * didn't come from the files are summed up under line -1.
+     *
+     * @return the totals per line, most expensive first
+     */
+    public List<LineStats> getLines() {
+        Map<LineKey, LineStats> lines = new HashMap<>();
+        for (PairStats pair : byCollision.values()) {
+            lines.merge(new LineKey(pair.source, pair.lineNumber),
+                    new LineStats(pair.source, pair.lineNumber, 1, pair.checks, pair.hits, pair.nanos),
+                    LineStats::plus);
+        }
+        List<LineStats> sorted = new ArrayList<>(lines.values());
+        sorted.sort(Comparator.comparingLong(LineStats::nanos).reversed());
+        return sorted;
+    }
+
+    /**
+     * Writes the counters of every pair to a CSV file.
+     *
+     * @param path the file to write to, its parent directories are created if needed
+     * @throws IOException if the file could not be written
+     */
+    public void dump(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("file,line,first,second,checks,hits,nanos");
+            writer.newLine();
+            for (PairStats pair : getPairs()) {
+                writer.write((pair.source != null ? pair.source : "") + "," + pair.lineNumber + "," + pair.first + "," + pair.second + "," + pair.checks
+                        + "," + pair.hits + "," + pair.nanos);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * The counters for a single registered collision.
+     */
+    public static class PairStats {
+
+        private final String first;
+        private final String second;
+        private String source;
+        private int lineNumber;
+        private long checks;
+        private long hits;
+        private long nanos;
+
+        private PairStats(String first, String second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public String getFirst() {
+            return first;
+        }
+
+        public String getSecond() {
+            return second;
+        }
+
+        /**
+         * @return the name of the file the pair was declared in, or null if it didn't come
+         * from the collisions files
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the line the pair was declared on, or -1 if it didn't come from the collisions files
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public long getChecks() {
+            return checks;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * The summed up counters of every pair declared on a single line.
+     *
+     * @param source the name of the collisions file, or null for collisions from elsewhere
+     * @param lineNumber the line of the file, or -1 for collisions from elsewhere
+     * @param pairs the number of registered pairs declared on the line
+     * @param checks the number of times those pairs were checked
+     * @param hits the number of checks that found a collision
+     * @param nanos the time spent checking those pairs
+     */
+    public record LineStats(String source, int lineNumber, int pairs, long checks, long hits, long nanos) {
+
+        private LineStats plus(LineStats other) {
+            return new LineStats(source, lineNumber, pairs + other.pairs, checks + other.checks,
+                    hits + other.hits, nanos + other.nanos);
+        }
+    }
+
+    private record LineKey(String source, int lineNumber) {}
+}
@@ -1,33 +1,191 @@
 package me.kwilson272.collisionutility;
 
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.logging.Level;
 
 public class CollisionUtility extends JavaPlugin {
 
+    private CollisionRegistry registry;
+    private CollisionEngine engine;
+    private CollisionStats stats;
+    private LoadMetricsBean loadMetrics;
+    private CollisionFileWatcher watcher;
+    private TickRecorder recorder;
+    private int loadGeneration;
+
     @Override
     public void onEnable() {
         saveDefaultConfig();
         saveResource("collisions.txt", false);
+        registry = new CollisionRegistry();
+        loadMetrics = new LoadMetricsBean(getLogger());
+        loadMetrics.register();
 
         Bukkit.getPluginManager().registerEvents(new ReloadListener(this), this);
+        CollisionCommand command = new CollisionCommand(this);
+        getCommand("collisionutility").setExecutor(command);
+        getCommand("collisionutility").setTabCompleter(command);
 
         // Run later to ensure all addons have loaded their abilities
-        Bukkit.getScheduler().runTaskLater(this, () ->
-                new CollisionLoader(this).loadCollisions(), 2);
+        Bukkit.getScheduler().runTaskLater(this, () -> loadCollisions(false), 2);
+        if (getConfig().getBoolean("Properties.HotReload.Enabled", false)) {
+            String fileName = getConfig().getString("Properties.CollisionFile", "collisions.txt");
+            String directoryName = getConfig().getString("Properties.CollisionDirectory", "collisions");
+            watcher = new CollisionFileWatcher(this, getDataFolder().toPath().resolve(fileName),
+                    getDataFolder().toPath().resolve(directoryName),
+                    getConfig().getLong("Properties.HotReload.Debounce", 500), this::hotReload);
+            watcher.start();
+        }
         getLogger().log(Level.INFO, "CollisionUtility by KWilson272 has been enabled!");
     }
 
     protected void reload() {
-        Bukkit.getScheduler().runTaskLater(this, () ->
-                new CollisionLoader(this).loadCollisions(), 2);
+        Bukkit.getScheduler().runTaskLater(this, () -> loadCollisions(false), 2);
         getLogger().log(Level.INFO, "CollisionUtility has reloaded.");
     }
 
+    /**
+     * Reloads only our own collisions after the collisions file was changed.
+     */
+    private void hotReload() {
+        getLogger().log(Level.INFO, "The collision files have changed, reloading collisions...");
+        loadCollisions(true);
+    }
+
+    /**
+     * Compiles the collisions file on an async worker, then registers the result on the
+     * main thread. If another load is started before a compile finishes, the older
+     * result is discarded so that loads are always applied in order.
+     *
+     * @param keepOnError true if the registered collisions should be left as they are when
+     *                    the file can't be read or has lines that can't be parsed
+     */
+    private void loadCollisions(boolean keepOnError) {
+        CollisionLoader loader = new CollisionLoader(this, registry);
+        int generation = ++loadGeneration;
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            CollisionTable table = loader.compile();
+            if (!isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(this, () -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                if (keepOnError && loader.hasErrors()) {
+                    getLogger().log(Level.WARNING, "The collision files have errors, the previous collisions "
+                            + "are kept until they are fixed");
+                } else {
+                    loader.apply(table);
+                    loadMetrics.update(loader.getMetrics());
+                    updateEngine();
+                }
+            });
+        });
+    }
+
+    /**
+     * Switches between our collision detection and ProjectKorra's, depending on the config.
+     */
+    private void updateEngine() {
+        if (engine != null) {
+            engine.stop();
+            engine = null;
+        }
+        if (!getConfig().getBoolean("Properties.CollisionEngine.Enabled", false)) {
+            stats = null;
+            return;
+        }
+
+        // Stats are kept across reloads, pairs that didn't change keep their counters
+        if (getConfig().getBoolean("Properties.CollisionEngine.TrackStats", false)) {
+            if (stats == null) {
+                stats = new CollisionStats();
+            }
+        } else {
+            stats = null;
+        }
+        engine = new CollisionEngine(this, registry, stats,
+                getConfig().getDouble("Properties.CollisionEngine.CellSize", 8),
+                getConfig().getInt("Properties.CollisionEngine.Threads", 1),
+                (long) (getConfig().getDouble("Properties.CollisionEngine.TickBudget", 0) * 1_000_000));
+        engine.start();
+    }
+
+    /**
+     * @return the metrics of the most recently applied load
+     */
+    protected LoadMetrics getLastLoadMetrics() {
+        return loadMetrics.getLastLoad();
+    }
+
+    /**
+     * @return the CollisionStats being recorded, or null if stats are not being tracked
+     */
+    protected CollisionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the BudgetReport of the running engine, or null if the engine is disabled
+     * or has no tick budget
+     */
+    protected BudgetReport getBudgetReport() {
+        return engine != null ? engine.getBudgetReport() : null;
+    }
+
+    /**
+     * Starts recording the live ability instances, stopping any recording that is
+     * already running.
+     *
+     * @param path the file to record to
+     * @param ticks the number of ticks to record for
+     * @return the new TickRecorder
+     * @throws IOException if the recording can't be created
+     */
+    protected TickRecorder startRecording(Path path, int ticks) throws IOException {
+        stopRecording();
+        recorder = new TickRecorder(this, registry, path, ticks);
+        recorder.start();
+        return recorder;
+    }
+
+    /**
+     * Stops the current recording, if there is one.
+     *
+     * @return true if a recording was running
+     */
+    protected boolean stopRecording() {
+        boolean recording = recorder != null && recorder.isRecording();
+        if (recorder != null) {
+            recorder.stop();
+            recorder = null;
+        }
+        return recording;
+    }
+
     @Override
     public void onDisable() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        stopRecording();
+        if (engine != null) {
+            engine.stop();
+        }
+        if (registry != null) {
+            registry.retractAll();
+        }
+        CollisionRules.clear();
+        if (loadMetrics != null) {
+            loadMetrics.unregister();
+        }
         getLogger().log(Level.INFO, "CollisionUtility by KWilson272 has been disabled.");
     }
 }
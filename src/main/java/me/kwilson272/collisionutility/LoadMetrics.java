@@ -0,0 +1,79 @@
+package me.kwilson272.collisionutility;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How long each stage of a single load took, and how much work each stage did.
+ */
+public class LoadMetrics {
+
+    private final long startedAt;
+    private final Map<String, Long> stageNanos;
+    private final Map<String, Long> counts;
+
+    public LoadMetrics() {
+        startedAt = System.currentTimeMillis();
+        stageNanos = new LinkedHashMap<>();
+        counts = new LinkedHashMap<>();
+    }
+
+    /**
+     * Records the time taken by a stage, adding to any time already recorded for it.
+     *
+     * @param stage the name of the stage
+     * @param nanos the time the stage took
+     */
+    public void addStage(String stage, long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * @param name the name of the count
+     * @param count the amount of work done
+     */
+    public void setCount(String name, long count) {
+        counts.put(name, count);
+    }
+
+    /**
+     * @return the time the load started, in milliseconds since the epoch
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the time taken by each stage, in nanoseconds
+     */
+    public Map<String, Long> getStageNanos() {
+        return Collections.unmodifiableMap(stageNanos);
+    }
+
+    /**
+     * @return the amount of work done by each stage
+     */
+    public Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return the time taken by every stage combined, in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos.values()) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     * @return the duration in milliseconds, formatted for logs and chat
+     */
+    public static String formatMillis(long nanos) {
+        return String.format("%.2fms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,99 @@
+package me.kwilson272.collisionutility;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics of the most recent load through JMX, under
+ * {@code me.kwilson272.collisionutility:type=LoadMetrics}.
+ */
+public class LoadMetricsBean implements LoadMetricsMXBean {
+
+    private static final String OBJECT_NAME = "me.kwilson272.collisionutility:type=LoadMetrics";
+
+    private final Logger logger;
+    private volatile LoadMetrics lastLoad;
+    private volatile long loadCount;
+
+    public LoadMetricsBean(Logger logger) {
+        this.logger = logger;
+        lastLoad = new LoadMetrics();
+    }
+
+    /**
+     * Registers this bean with the platform MBeanServer, replacing any bean left behind
+     * by a previous instance of the plugin.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not register the load metrics with JMX", e);
+        }
+    }
+
+    /**
+     * Removes this bean from the platform MBeanServer.
+     */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not unregister the load metrics from JMX", e);
+        }
+    }
+
+    /**
+     * @param metrics the metrics of a load that has just been applied
+     */
+    public void update(LoadMetrics metrics) {
+        lastLoad = metrics;
+        loadCount++;
+    }
+
+    /**
+     * @return the metrics of the most recent load
+     */
+    public LoadMetrics getLastLoad() {
+        return lastLoad;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    @Override
+    public long getLastLoadStartedAt() {
+        return lastLoad.getStartedAt();
+    }
+
+    @Override
+    public long getLastLoadTotalNanos() {
+        return lastLoad.getTotalNanos();
+    }
+
+    @Override
+    public Map<String, Long> getLastLoadStageNanos() {
+        return lastLoad.getStageNanos();
+    }
+
+    @Override
+    public Map<String, Long> getLastLoadCounts() {
+        return lastLoad.getCounts();
+    }
+}
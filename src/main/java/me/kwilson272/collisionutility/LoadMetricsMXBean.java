@@ -0,0 +1,34 @@
+package me.kwilson272.collisionutility;
+
+import java.util.Map;
+
+/**
+ * Exposes the metrics of the most recent collision load over JMX.
+ */
+public interface LoadMetricsMXBean {
+
+    /**
+     * @return the number of loads applied since the plugin was enabled
+     */
+    long getLoadCount();
+
+    /**
+     * @return the time the most recent load started, in milliseconds since the epoch
+     */
+    long getLastLoadStartedAt();
+
+    /**
+     * @return the time taken by every stage of the most recent load, in nanoseconds
+     */
+    long getLastLoadTotalNanos();
+
+    /**
+     * @return the time taken by each stage of the most recent load, in nanoseconds
+     */
+    Map<String, Long> getLastLoadStageNanos();
+
+    /**
+     * @return the amount of work done by each stage of the most recent load
+     */
+    Map<String, Long> getLastLoadCounts();
+}
@@ -0,0 +1,31 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ability.util.Collision;
+
+import java.util.List;
+
+/**
+ * The changes applied to ProjectKorra's collisions by a single load, compared to
+ * what the previous load registered.
+ *
+ * @param added the collisions registered for pairs that were not previously registered
+ * @param changed the collisions registered for pairs whose outcome differs from the previous load
+ * @param removed the pairs that are no longer declared at all
+ * @param unchanged the number of pairs that were left registered as they were
+ */
+public record ReloadDiff(List<Collision> added, List<Collision> changed,
+                         List<AbilityPair> removed, int unchanged) {
+
+    /**
+     * @return the number of pairs that had to be added, changed, or removed
+     */
+    public int changedPairs() {
+        return added.size() + changed.size() + removed.size();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + changed.size() + " changed, " + removed.size()
+                + " removed, " + unchanged + " unchanged";
+    }
+}
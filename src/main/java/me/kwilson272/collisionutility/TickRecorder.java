@@ -0,0 +1,226 @@
+package me.kwilson272.collisionutility;
+
+import com.projectkorra.projectkorra.ProjectKorra;
+import com.projectkorra.projectkorra.ability.CoreAbility;
+import com.projectkorra.projectkorra.ability.PassiveAbility;
+import com.projectkorra.projectkorra.ability.util.Collision;
+import com.projectkorra.projectkorra.ability.util.CollisionManager;
+
+import me.kwilson272.collisionutility.detection.InstanceSnapshot;
+import me.kwilson272.collisionutility.detection.RecordingWriter;
+import me.kwilson272.collisionutility.detection.RuleSet;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Records the live ability instances every tick, so that the collision load of a real
+ * server can be replayed offline with the ReplayRunner.
+ *<p>
+ * Instances are sampled the same way the {@link CollisionEngine} samples them, and the
+ * rules are taken from ProjectKorra's CollisionManager, so a recording holds what either
+ * engine would have been asked to check. It works the same whether or not our engine is
+ * enabled.
+ */
+public class TickRecorder {
+
+    private final Plugin plugin;
+    private final CollisionRegistry registry;
+    private final Path path;
+    private final int maxTicks;
+    private final InstanceSnapshot snapshot;
+    private final Map<Class<?>, Integer> typeIds;
+    private final Set<String> typeNames;
+    private final Map<World, Integer> worldIds;
+    private final Map<Player, Integer> ownerIds;
+    private final List<Location> locations;
+
+    private RecordingWriter writer;
+    private Collision[] ruleCollisions;
+    private BukkitTask task;
+
+    /**
+     * @param plugin the Plugin the recording task is scheduled under
+     * @param registry the CollisionRegistry used to find the priority and interval of collisions
+     * @param path the file to record to
+     * @param maxTicks the number of ticks to record before stopping
+     */
+    public TickRecorder(Plugin plugin, CollisionRegistry registry, Path path, int maxTicks) {
+        this.plugin = plugin;
+        this.registry = registry;
+        this.path = path;
+        this.maxTicks = maxTicks;
+        snapshot = new InstanceSnapshot();
+        typeIds = new HashMap<>();
+        typeNames = new HashSet<>();
+        worldIds = new HashMap<>();
+        ownerIds = new HashMap<>();
+        locations = new ArrayList<>();
+        ruleCollisions = new Collision[0];
+    }
+
+    /**
+     * Creates the recording and starts sampling every tick.
+     *
+     * @throws IOException if the recording can't be created
+     */
+    public void start() throws IOException {
+        CollisionManager manager = ProjectKorra.getCollisionManager();
+        Files.createDirectories(path.getParent());
+        writer = new RecordingWriter(path, manager.getCertainNoCollisionDistance(),
+                manager.isRemoveMultipleInstances());
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Stops sampling and closes the recording. Does nothing if it was already stopped.
+     */
+    public void stop() {
+        if (task == null) {
+            return;
+        }
+        task.cancel();
+        task = null;
+        try {
+            writer.close();
+            plugin.getLogger().log(Level.INFO, "Recorded " + writer.getTicks() + " ticks ("
+                    + writer.getBytes() / 1024 + " KiB) to " + path.getFileName());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not finish the recording " + path, e);
+        }
+    }
+
+    /**
+     * @return true if the recorder is still sampling
+     */
+    public boolean isRecording() {
+        return task != null;
+    }
+
+    /**
+     * @return the file being recorded to
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    private void tick() {
+        try {
+            CollisionManager manager = ProjectKorra.getCollisionManager();
+            refreshRules(manager.getCollisions());
+            takeSnapshot();
+            writer.writeTick(snapshot);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write to the recording " + path, e);
+            stop();
+            return;
+        }
+        if (writer.getTicks() >= maxTicks) {
+            stop();
+        }
+    }
+
+    /**
+     * Writes the rules again if the registered collisions have changed since the last tick.
+     */
+    private void refreshRules(List<Collision> collisions) throws IOException {
+        if (collisions.size() == ruleCollisions.length) {
+            int i = 0;
+            while (i < ruleCollisions.length && collisions.get(i) == ruleCollisions[i]) {
+                i++;
+            }
+            if (i == ruleCollisions.length) {
+                return;
+            }
+        }
+
+        // Type ids are kept for the whole recording, so that ticks before and after a
+        // reload refer to the same abilities
+        ruleCollisions = collisions.toArray(new Collision[0]);
+        RuleSet.Builder builder = RuleSet.builder();
+        for (Collision collision : ruleCollisions) {
+            int firstType = typeId(collision.getAbilityFirst());
+            int secondType = typeId(collision.getAbilitySecond());
+            builder.addRule(firstType, secondType, collision.isRemovingFirst(), collision.isRemovingSecond(),
+                    registry.getPriority(collision), registry.getInterval(collision));
+        }
+        writer.writeRules(builder.build());
+    }
+
+    private int typeId(CoreAbility ability) throws IOException {
+        Integer id = typeIds.get(ability.getClass());
+        if (id == null) {
+            id = typeIds.size();
+            typeIds.put(ability.getClass(), id);
+            // Abilities that share a name can only be told apart by their class
+            String name = typeNames.add(ability.getName()) ? ability.getName() : ability.getClass().getName();
+            writer.writeType(id, name);
+        }
+        return id;
+    }
+
+    /**
+     * Fills the snapshot the same way the CollisionEngine does, leaving it empty on ticks
+     * where detection would be skipped.
+     */
+    private void takeSnapshot() {
+        snapshot.clear();
+        worldIds.clear();
+        ownerIds.clear();
+        if (ruleCollisions.length == 0 || !hasMultipleActiveInstances()) {
+            return;
+        }
+
+        for (CoreAbility ability : CoreAbility.getAbilitiesByInstances()) {
+            Integer type = typeIds.get(ability.getClass());
+            if (type == null || ability.getPlayer() == null || !ability.isCollidable()) {
+                continue;
+            }
+            List<Location> abilityLocations = ability.getLocations();
+            if (abilityLocations == null) {
+                continue;
+            }
+            locations.clear();
+            for (Location location : abilityLocations) {
+                if (location != null) {
+                    locations.add(location);
+                }
+            }
+            if (locations.isEmpty()) {
+                continue;
+            }
+
+            int owner = ownerIds.computeIfAbsent(ability.getPlayer(), k -> ownerIds.size());
+            snapshot.addInstance(type, owner, ability.getCollisionRadius(), ability.getId());
+            for (Location location : locations) {
+                int world = worldIds.computeIfAbsent(location.getWorld(), k -> worldIds.size());
+                snapshot.addLocation(world, location.getX(), location.getY(), location.getZ());
+            }
+        }
+    }
+
+    private boolean hasMultipleActiveInstances() {
+        int activeInstances = 0;
+        for (CoreAbility ability : CoreAbility.getAbilitiesByInstances()) {
+            if (!(ability instanceof PassiveAbility) && ++activeInstances > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package me.kwilson272.collisionutility.compiler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the abilities of an {@link AbilitySymbolTable} as a plain text list,
+ * so that collision files can be compiled against a server's abilities without the
+ * server running.
+ *<p>
+ * Each line holds one ability in id order: the name it was registered under, followed
+ * by its aliases and the selectors it belongs to, separated by tabs. Selectors start with
+ * {@code @}, and every selector is also declared on a line of its own so that selectors
+ * without abilities are kept. Lines starting with {@code #} are comments. Reading a list
+ * back produces a table with the same ids and selectors as the one it was written from.
+ */
+public final class AbilityList {
+
+    private static final String SELECTOR = "@";
+
+    private AbilityList() {
+    }
+
+    /**
+     * Writes every ability and alias of a table.
+     *
+     * @param symbols the AbilitySymbolTable to write
+     * @param path the file to write to, which is replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void write(AbilitySymbolTable symbols, Path path) throws IOException {
+        List<List<String>> aliases = new ArrayList<>();
+        for (int id = 0; id < symbols.size(); id++) {
+            aliases.add(new ArrayList<>());
+        }
+        // Sorted so that the same abilities always produce the same file
+        for (Map.Entry<String, Integer> alias : new TreeMap<>(symbols.getAliases()).entrySet()) {
+            aliases.get(alias.getValue()).add(alias.getKey());
+        }
+        for (Map.Entry<String, BitSet> selector : symbols.getSelectors().entrySet()) {
+            BitSet ids = selector.getValue();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                aliases.get(id).add(SELECTOR + selector.getKey());
+            }
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# Abilities exported by CollisionUtility, one per line in id order.");
+            writer.newLine();
+            writer.write("# Each line is the name of an ability, followed by its aliases and @selectors, separated");
+            writer.newLine();
+            writer.write("# by tabs. Every selector is also listed on its own line before the abilities.");
+            writer.newLine();
+            for (String selector : symbols.getSelectors().keySet()) {
+                writer.write(SELECTOR + selector);
+                writer.newLine();
+            }
+            for (int id = 0; id < symbols.size(); id++) {
+                writer.write(symbols.getName(id));
+                for (String alias : aliases.get(id)) {
+                    writer.write('\t');
+                    writer.write(alias);
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a list written by {@link #write(AbilitySymbolTable, Path)} into a new table.
+     *
+     * @param path the file to read
+     * @param caseInsensitive true if aliases should be matched regardless of case
+     * @return the new AbilitySymbolTable
+     * @throws IOException if the file can't be read
+     */
+    public static AbilitySymbolTable read(Path path, boolean caseInsensitive) throws IOException {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(caseInsensitive);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith(SELECTOR)) {
+                    builder.addSelector(line.substring(SELECTOR.length()).trim());
+                    continue;
+                }
+                String[] names = line.split("\t");
+                int id = builder.addAbility(names[0].trim());
+                for (int i = 1; i < names.length; i++) {
+                    String name = names[i].trim();
+                    if (name.startsWith(SELECTOR)) {
+                        builder.addToSelector(name.substring(SELECTOR.length()), id);
+                    } else {
+                        builder.addAlias(name, id);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,229 @@
+package me.kwilson272.collisionutility.compiler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps every ability name and alias to a stable integer id, so that the rest of the
+ * compile stage can work on ids rather than names or ability objects.
+ *<p>
+ * Ids are dense, starting at 0, and are only stable for the lifetime of the table.
+ * Each name is only resolved once, after which the result is cached, including names
+ * that could not be resolved.
+ *<p>
+ * The table also holds selectors, named sets of abilities such as every ability of an
+ * element or every combo. They are filled in once when the table is built, so an
+ * operand like {@code @Fire} resolves to a precomputed set rather than a list of names.
+ */
+public class AbilitySymbolTable {
+
+    /**
+     * The id returned for names that don't resolve to an ability.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final boolean caseInsensitive;
+    private final Map<String, Integer> aliases;
+    private final Map<String, Integer> abilityNames;
+    private final String[] keys;
+    private final String[] names;
+    private final Map<String, Integer> resolved;
+    private final SortedMap<String, BitSet> selectors;
+
+    private AbilitySymbolTable(Builder builder) {
+        caseInsensitive = builder.caseInsensitive;
+        aliases = Collections.unmodifiableMap(new HashMap<>(builder.aliases));
+        abilityNames = Collections.unmodifiableMap(new HashMap<>(builder.abilityNames));
+        names = builder.displayNames.toArray(new String[0]);
+        resolved = new ConcurrentHashMap<>();
+        selectors = Collections.unmodifiableSortedMap(new TreeMap<>(builder.selectors));
+
+        // Pick a name for every ability that resolves back to it, abilities that share
+        // a name can only be told apart by their alias
+        keys = new String[builder.displayNames.size()];
+        for (String name : getNames()) {
+            int id = resolve(name);
+            if (keys[id] == null) {
+                keys[id] = name;
+            }
+        }
+    }
+
+    /**
+     * @param caseInsensitive true if aliases should be matched regardless of case, ability
+     *                        names are always matched regardless of case
+     * @return a new Builder for an AbilitySymbolTable
+     */
+    public static Builder builder(boolean caseInsensitive) {
+        return new Builder(caseInsensitive);
+    }
+
+    /**
+     * Resolves a name to the id of the ability it refers to. Aliases take priority over
+     * ability names.
+     *
+     * @param name the alias or ability name
+     * @return the id of the ability, or {@link #UNKNOWN} if the name doesn't refer to one
+     */
+    public int resolve(String name) {
+        Integer id = resolved.get(name);
+        if (id == null) {
+            id = aliases.get(caseInsensitive ? name.toLowerCase(Locale.ROOT) : name);
+            if (id == null) {
+                id = abilityNames.getOrDefault(name.toLowerCase(Locale.ROOT), UNKNOWN);
+            }
+            resolved.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of distinct abilities in this table
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Gets a name that {@link #resolve(String)} resolves back to the provided id.
+     *
+     * @param id the id of an ability
+     * @return the name
+     */
+    public String getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     * @param id the id of an ability
+     * @return the name the ability was added under, which may not resolve back to it if
+     * another ability shares the name
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return every alias, and the id of the ability it refers to
+     */
+    public Map<String, Integer> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * @return every alias and ability name this table can resolve, in sorted order
+     */
+    public SortedSet<String> getNames() {
+        SortedSet<String> names = new TreeSet<>(aliases.keySet());
+        names.addAll(abilityNames.keySet());
+        return names;
+    }
+
+    /**
+     * Gets the abilities a selector refers to, regardless of case.
+     *
+     * @param name the name of the selector, without the {@code @}
+     * @return a BitSet of ability ids, which must not be modified, or null if there is no
+     * selector with the name
+     */
+    public BitSet select(String name) {
+        return selectors.get(name);
+    }
+
+    /**
+     * @return every selector and the ids of the abilities it refers to, sorted by name
+     * regardless of case
+     */
+    public SortedMap<String, BitSet> getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * Collects the abilities and aliases for a new AbilitySymbolTable.
+     */
+    public static class Builder {
+
+        private final boolean caseInsensitive;
+        private final Map<String, Integer> aliases;
+        private final Map<String, Integer> abilityNames;
+        private final List<String> displayNames;
+        private final SortedMap<String, BitSet> selectors;
+
+        private Builder(boolean caseInsensitive) {
+            this.caseInsensitive = caseInsensitive;
+            aliases = new HashMap<>();
+            abilityNames = new HashMap<>();
+            displayNames = new ArrayList<>();
+            selectors = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        }
+
+        /**
+         * Adds a distinct ability to the table. If another ability was already added
+         * under the same name, the name keeps referring to that ability, and the new one
+         * can only be reached through an alias.
+         *
+         * @param name the name of the ability
+         * @return the id of the new ability
+         */
+        public int addAbility(String name) {
+            int id = displayNames.size();
+            displayNames.add(name);
+            abilityNames.putIfAbsent(name.toLowerCase(Locale.ROOT), id);
+            return id;
+        }
+
+        /**
+         * Adds an alternate name for an ability that was already added.
+         *
+         * @param alias the alternate name
+         * @param id the id returned when the ability was added
+         * @return this Builder
+         */
+        public Builder addAlias(String alias, int id) {
+            aliases.put(caseInsensitive ? alias.toLowerCase(Locale.ROOT) : alias, id);
+            return this;
+        }
+
+        /**
+         * Adds a selector that doesn't refer to any abilities yet. Selectors are matched
+         * regardless of case, and keep the name they were first added under.
+         *
+         * @param name the name of the selector, without the {@code @}
+         * @return this Builder
+         */
+        public Builder addSelector(String name) {
+            selectors.computeIfAbsent(name, key -> new BitSet());
+            return this;
+        }
+
+        /**
+         * Adds an ability that was already added to a selector, adding the selector if it
+         * doesn't exist yet.
+         *
+         * @param name the name of the selector, without the {@code @}
+         * @param id the id returned when the ability was added
+         * @return this Builder
+         */
+        public Builder addToSelector(String name, int id) {
+            selectors.computeIfAbsent(name, key -> new BitSet()).set(id);
+            return this;
+        }
+
+        /**
+         * @return the finished AbilitySymbolTable
+         */
+        public AbilitySymbolTable build() {
+            return new AbilitySymbolTable(this);
+        }
+    }
+}
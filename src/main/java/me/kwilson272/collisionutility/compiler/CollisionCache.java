@@ -0,0 +1,272 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores a compiled {@link CollisionTable} on disk, so that an unchanged collisions
+ * file can be loaded without lexing, parsing, or expanding groups again.
+ *<p>
+ * The cache is keyed by a hash of everything that can change the compiled result:
+ * the collision files themselves, the plugin configuration, and the names of the
+ * registered abilities. Abilities are stored by name and resolved again on load.
+ *<p>
+ * The warnings and analysis findings of the compile are stored with the table, so that
+ * they are reported again on every load that uses the cache.
+ */
+public class CollisionCache {
+
+    private static final int MAGIC = 0x43555443; // "CUTC"
+    private static final int VERSION = 6;
+
+    private final Path path;
+    private final Logger logger;
+
+    /**
+     * @param path the file the cache is stored in
+     * @param logger the Logger used when the cache can't be read or written
+     */
+    public CollisionCache(Path path, Logger logger) {
+        this.path = path;
+        this.logger = logger;
+    }
+
+    /**
+     * Computes the key a cached table must match to be used.
+     *
+     * @param sources the raw contents of every collision file by name, in the order they are read
+     * @param config the plugin configuration, saved as a string
+     * @param symbols the AbilitySymbolTable the table is resolved against
+     * @return the key as a hash
+     */
+    public static byte[] key(Map<String, byte[]> sources, String config, AbilitySymbolTable symbols) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+            // The length keeps the end of one file from being mistaken for the start of the next
+            digest.update(source.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(source.getValue().length).array());
+            digest.update(source.getValue());
+        }
+        digest.update((byte) 0);
+        digest.update(config.getBytes(StandardCharsets.UTF_8));
+        for (String name : symbols.getNames()) {
+            digest.update((byte) 0);
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+        }
+        // An ability can change element without any names changing
+        for (Map.Entry<String, BitSet> selector : symbols.getSelectors().entrySet()) {
+            digest.update((byte) 0);
+            digest.update(selector.getKey().getBytes(StandardCharsets.UTF_8));
+            BitSet ids = selector.getValue();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                digest.update((byte) 0);
+                digest.update(symbols.getKey(id).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads the cached table if its key matches.
+     *
+     * @param key the key computed for the current inputs
+     * @param symbols the AbilitySymbolTable used to resolve the stored names
+     * @return the cached Entry, or null if there is no usable cache
+     */
+    public Entry read(byte[] key, AbilitySymbolTable symbols) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] storedKey = new byte[in.readUnsignedShort()];
+            in.readFully(storedKey);
+            if (!Arrays.equals(key, storedKey)) {
+                return null;
+            }
+
+            CollisionTable table = new CollisionTable();
+            int size = in.readInt();
+            TokenType[] operators = TokenType.values();
+            for (int i = 0; i < size; i++) {
+                int first = symbols.resolve(in.readUTF());
+                TokenType operator = operators[in.readUnsignedByte()];
+                int second = symbols.resolve(in.readUTF());
+                String source = readNullableUTF(in);
+                int lineNumber = in.readInt();
+                int priority = in.readInt();
+                int interval = in.readInt();
+                if (first == AbilitySymbolTable.UNKNOWN || second == AbilitySymbolTable.UNKNOWN) {
+                    // The key covers the ability names, so this should only happen if
+                    // the file was tampered with
+                    return null;
+                }
+                table.put(new CollisionRule(first, operator, second, source, lineNumber, priority, interval));
+            }
+
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            int diagnosticCount = in.readInt();
+            Diagnostic.Severity[] severities = Diagnostic.Severity.values();
+            for (int i = 0; i < diagnosticCount; i++) {
+                Diagnostic.Severity severity = severities[in.readUnsignedByte()];
+                String source = readNullableUTF(in);
+                int lineNumber = in.readInt();
+                int column = in.readInt();
+                String expected = in.readUTF();
+                String found = in.readUTF();
+                List<String> suggestions = new ArrayList<>();
+                int suggestionCount = in.readUnsignedByte();
+                for (int j = 0; j < suggestionCount; j++) {
+                    suggestions.add(in.readUTF());
+                }
+                diagnostics.add(new Diagnostic(severity, source, lineNumber, column, expected, found,
+                        List.copyOf(suggestions)));
+            }
+
+            List<RuleFinding> findings = new ArrayList<>();
+            int findingCount = in.readInt();
+            RuleFinding.Kind[] kinds = RuleFinding.Kind.values();
+            for (int i = 0; i < findingCount; i++) {
+                RuleFinding.Kind kind = kinds[in.readUnsignedByte()];
+                String source = readNullableUTF(in);
+                findings.add(new RuleFinding(kind, source, in.readInt(), in.readInt(), in.readUTF()));
+            }
+            return new Entry(table, diagnostics, findings, in.readInt());
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            logger.log(Level.WARNING, "Could not read the collision cache, recompiling", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a table to the cache, replacing anything stored before.
+     *
+     * @param key the key computed for the inputs the table was compiled from
+     * @param entry the compiled CollisionTable, and what was reported while compiling it
+     * @param symbols the AbilitySymbolTable the table was resolved against
+     */
+    public void write(byte[] key, Entry entry, AbilitySymbolTable symbols) {
+        CollisionTable table = entry.table();
+        Path temp = null;
+        try {
+            Files.createDirectories(path.getParent());
+            // Reloads compile on their own tasks, so each write needs its own temp file
+            temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeShort(key.length);
+                out.write(key);
+
+                // Removals are written first as x rules, so that put() rebuilds both sets
+                // exactly, even for pairs that were cancelled and then declared again
+                out.writeInt(table.getRemovals().size() + table.getRules().size());
+                for (long pair : table.getRemovals()) {
+                    CollisionRule removal = new CollisionRule(CollisionTable.firstOf(pair), TokenType.X,
+                            CollisionTable.secondOf(pair), null, 0, 0, 1);
+                    writeRule(out, removal, symbols);
+                }
+                for (CollisionRule rule : table.getRules()) {
+                    writeRule(out, rule, symbols);
+                }
+
+                out.writeInt(entry.diagnostics().size());
+                for (Diagnostic diagnostic : entry.diagnostics()) {
+                    out.writeByte(diagnostic.severity().ordinal());
+                    writeNullableUTF(out, diagnostic.source());
+                    out.writeInt(diagnostic.lineNumber());
+                    out.writeInt(diagnostic.column());
+                    out.writeUTF(diagnostic.expected());
+                    out.writeUTF(diagnostic.found());
+                    out.writeByte(diagnostic.suggestions().size());
+                    for (String suggestion : diagnostic.suggestions()) {
+                        out.writeUTF(suggestion);
+                    }
+                }
+
+                out.writeInt(entry.findings().size());
+                for (RuleFinding finding : entry.findings()) {
+                    out.writeByte(finding.kind().ordinal());
+                    writeNullableUTF(out, finding.source());
+                    out.writeInt(finding.lineNumber());
+                    out.writeInt(finding.pairs());
+                    out.writeUTF(finding.message());
+                }
+                out.writeInt(entry.droppedDeclarations());
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write the collision cache", e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Left behind until the cache directory is cleared
+                }
+            }
+        }
+    }
+
+    private void writeRule(DataOutputStream out, CollisionRule rule, AbilitySymbolTable symbols) throws IOException {
+        out.writeUTF(symbols.getKey(rule.first()));
+        out.writeByte(rule.operator().ordinal());
+        out.writeUTF(symbols.getKey(rule.second()));
+        writeNullableUTF(out, rule.source());
+        out.writeInt(rule.lineNumber());
+        out.writeInt(rule.priority());
+        out.writeInt(rule.interval());
+    }
+
+    /**
+     * Writes a file name, storing null as an empty string, which is never a valid name.
+     */
+    private static void writeNullableUTF(DataOutputStream out, String text) throws IOException {
+        out.writeUTF(text != null ? text : "");
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        String text = in.readUTF();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * A compiled table, and what was reported while compiling it.
+     *
+     * @param table the compiled CollisionTable
+     * @param diagnostics the warnings found while reading and compiling the files
+     * @param findings what the analysis found, which is empty if it was not enabled
+     * @param droppedDeclarations the number of declarations the analysis skipped
+     */
+    public record Entry(CollisionTable table, List<Diagnostic> diagnostics, List<RuleFinding> findings,
+                        int droppedDeclarations) {}
+}
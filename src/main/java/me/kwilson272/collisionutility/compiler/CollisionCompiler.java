@@ -0,0 +1,366 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.Suggestions;
+import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+import me.kwilson272.collisionutility.parser.grammar.GroupDeclaration;
+import me.kwilson272.collisionutility.parser.grammar.Operand;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves parsed expressions into a {@link CollisionTable}, without registering
+ * anything with ProjectKorra. A compiler should only be used for one compile.
+ */
+public class CollisionCompiler {
+
+    // Finding the closest names is the slow part of a diagnostic, so files with thousands of
+    // unknown names only get suggestions for the first few
+    private static final int MAX_SUGGESTED = 100;
+
+    private final AbilitySymbolTable symbols;
+    private final List<Diagnostic> diagnostics;
+    private List<String> abilityNames;
+    private final Map<String, GroupDeclaration> groupDeclarations;
+    private final Map<String, BitSet> groups;
+    private final Map<String, int[]> groupOrders;
+    private final List<String> resolving;
+    private final List<CollisionDeclaration> collisionDeclarations;
+
+    private boolean analyze;
+    private boolean dropRedundant;
+    private final List<RuleFinding> findings;
+    private int droppedDeclarations;
+
+    private long groupResolutionNanos;
+    private long analysisNanos;
+    private long expansionNanos;
+    private int expandedPairs;
+
+    /**
+     * Creates a new compiler with no declared groups. Compiling does not touch
+     * ProjectKorra, so it is safe to do off the main thread.
+     *
+     * @param symbols the AbilitySymbolTable used to resolve ability names
+     */
+    public CollisionCompiler(AbilitySymbolTable symbols) {
+        this.symbols = symbols;
+        diagnostics = new ArrayList<>();
+        groupDeclarations = new LinkedHashMap<>();
+        groups = new HashMap<>();
+        groupOrders = new HashMap<>();
+        resolving = new ArrayList<>();
+        collisionDeclarations = new ArrayList<>();
+        findings = new ArrayList<>();
+    }
+
+    /**
+     * Checks the declarations for redundancy before they are expanded. The findings can
+     * be read back once the compile has finished.
+     *
+     * @param dropRedundant true if declarations and pairs that don't change the table
+     *                      should be skipped
+     */
+    public void enableAnalysis(boolean dropRedundant) {
+        analyze = true;
+        this.dropRedundant = dropRedundant;
+    }
+
+    /**
+     * Resolves every expression into a single table of collisions. Later declarations
+     * of a pair override earlier ones.
+     *
+     * @param expressions the parsed expressions, in the order they were declared
+     * @return the resolved CollisionTable
+     */
+    public CollisionTable compile(List<Expression> expressions) {
+        for (Expression expression : expressions) {
+            accept(expression);
+        }
+        return expand();
+    }
+
+    private void accept(Expression expression) {
+        if (expression instanceof GroupDeclaration groupDeclaration) {
+            GroupDeclaration previous = groupDeclarations.put(groupDeclaration.groupName(), groupDeclaration);
+            if (previous != null) {
+                warn(groupDeclaration.source(), groupDeclaration.lineNumber(), groupDeclaration.column(),
+                        "a single declaration of the group, only the last one will be used",
+                        "\"" + groupDeclaration.groupName() + "\" declared again", List.of());
+            }
+        } else if (expression instanceof CollisionDeclaration collisionDeclaration) {
+            collisionDeclarations.add(collisionDeclaration);
+        }
+    }
+
+    /**
+     * Resolves every group and operand, then expands every collision declaration into the
+     * table, in the order they were declared.
+     *
+     * @return the resolved CollisionTable
+     */
+    private CollisionTable expand() {
+        long start = System.nanoTime();
+        for (String groupName : groupDeclarations.keySet()) {
+            resolveGroup(groupName, null);
+        }
+        int size = collisionDeclarations.size();
+        BitSet[] lefts = new BitSet[size];
+        BitSet[] rights = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            lefts[i] = getAbilities(collisionDeclarations.get(i).leftOperand());
+            rights[i] = getAbilities(collisionDeclarations.get(i).rightOperand());
+        }
+        long resolved = System.nanoTime();
+        groupResolutionNanos = resolved - start;
+
+        BitSet skipped = new BitSet();
+        if (analyze) {
+            BitSet redundant = new RuleAnalyzer(symbols.size()).analyze(collisionDeclarations, lefts, rights, findings);
+            if (dropRedundant) {
+                skipped = redundant;
+                droppedDeclarations = redundant.cardinality();
+            }
+        }
+        long analyzed = System.nanoTime();
+        analysisNanos = analyzed - resolved;
+
+        CollisionTable table = new CollisionTable();
+        for (int i = 0; i < size; i++) {
+            if (!skipped.get(i)) {
+                loadCollision(collisionDeclarations.get(i), lefts[i], rights[i], table);
+            }
+        }
+        expansionNanos = System.nanoTime() - analyzed;
+        return table;
+    }
+
+    /**
+     * @return the time spent resolving groups and operands during the last compile
+     */
+    public long getGroupResolutionNanos() {
+        return groupResolutionNanos;
+    }
+
+    /**
+     * @return the time spent analyzing collision declarations during the last compile, 0 if
+     * analysis is not enabled
+     */
+    public long getAnalysisNanos() {
+        return analysisNanos;
+    }
+
+    /**
+     * @return the time spent expanding collision declarations into pairs during the last compile
+     */
+    public long getExpansionNanos() {
+        return expansionNanos;
+    }
+
+    /**
+     * @return the number of groups declared
+     */
+    public int getGroupCount() {
+        return groupDeclarations.size();
+    }
+
+    /**
+     * @return the number of pairs collision declarations expanded into, including pairs
+     * that were later overridden
+     */
+    public int getExpandedPairs() {
+        return expandedPairs;
+    }
+
+    /**
+     * @return the findings of the analysis, in the order the declarations were read, which is
+     * empty if analysis is not enabled
+     */
+    public List<RuleFinding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * @return the number of declarations that were skipped because they don't change the table
+     */
+    public int getDroppedDeclarations() {
+        return droppedDeclarations;
+    }
+
+    /**
+     * @return a warning for every unknown ability, group, or selector, duplicate group, and group that
+     * references itself, in the order they were found
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    private void warn(String source, int lineNumber, int column, String expected, String found,
+                      List<String> suggestions) {
+        diagnostics.add(new Diagnostic(Diagnostic.Severity.WARNING, source, lineNumber, column,
+                expected, found, suggestions));
+    }
+
+    /**
+     * @return the name of every ability as it was added, followed by every alias
+     */
+    private List<String> suggestableNames() {
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < symbols.size(); id++) {
+            names.add(symbols.getName(id));
+        }
+        names.addAll(symbols.getAliases().keySet());
+        return names;
+    }
+
+    private List<String> suggest(String name, Iterable<String> candidates) {
+        return diagnostics.size() < MAX_SUGGESTED ? Suggestions.closest(name, candidates) : List.of();
+    }
+
+    /**
+     * Resolves a group into the set of abilities it contains, resolving any groups it
+     * references first. Results are memoized, so each group is only resolved once.
+     *
+     * @param groupName the name of the group
+     * @param reference the operand that references the group, or null if it isn't referenced
+     * @return a BitSet of ability ids, which must not be modified
+     */
+    private BitSet resolveGroup(String groupName, Operand reference) {
+        BitSet resolved = groups.get(groupName);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        GroupDeclaration groupDeclaration = groupDeclarations.get(groupName);
+        if (groupDeclaration == null) {
+            warn(reference.source(), reference.lineNumber(), reference.column(), "the name of a declared group",
+                    "\"$" + groupName + "\"", suggest(groupName, groupDeclarations.keySet()));
+            return new BitSet();
+        }
+        if (resolving.contains(groupName)) {
+            warn(reference.source(), reference.lineNumber(), reference.column(),
+                    "a group that doesn't reference itself, the reference will be ignored",
+                    String.join(" -> ", resolving) + " -> " + groupName, List.of());
+            return new BitSet();
+        }
+
+        resolving.add(groupName);
+        BitSet abilitySet = new BitSet(symbols.size());
+        List<Integer> order = new ArrayList<>();
+        for (Operand groupOperand : groupDeclaration.operands()) {
+            BitSet operandSet = getAbilities(groupOperand);
+            for (int id : declaredOrder(groupOperand, operandSet)) {
+                if (!abilitySet.get(id)) {
+                    abilitySet.set(id);
+                    order.add(id);
+                }
+            }
+        }
+        resolving.remove(resolving.size() - 1);
+
+        groups.put(groupName, abilitySet);
+        groupOrders.put(groupName, order.stream().mapToInt(Integer::intValue).toArray());
+        return abilitySet;
+    }
+
+    /**
+     * Gets the abilities of an operand in the order they were first listed in, which is
+     * the order ProjectKorra used to have their collisions registered in.
+     *
+     * @param operand the Operand, which must have been resolved already
+     * @param abilities the abilities the operand resolved to
+     * @return the ids of the abilities, with selectors and single abilities in id order
+     */
+    private int[] declaredOrder(Operand operand, BitSet abilities) {
+        if (operand.isGroupReference()) {
+            int[] order = groupOrders.get(operand.literal());
+            if (order != null) {
+                return order;
+            }
+        }
+        return abilities.stream().toArray();
+    }
+
+    /**
+     * Gets all abilities from an operand, regardless of if it is a group
+     * reference, a selector, or a single ability name.
+     *
+     * @param operand the Operand from which the Abilities are derived
+     * @return a BitSet of ability ids, which must not be modified
+     */
+    private BitSet getAbilities(Operand operand) {
+        if (operand.isGroupReference()) {
+            return resolveGroup(operand.literal(), operand);
+        } else if (operand.isSelector()) {
+            return select(operand);
+        }
+
+        BitSet abilitySet = new BitSet();
+        int id = symbols.resolve(operand.literal());
+        if (id == AbilitySymbolTable.UNKNOWN) {
+            if (abilityNames == null && diagnostics.size() < MAX_SUGGESTED) {
+                abilityNames = suggestableNames();
+            }
+            List<String> suggestions = abilityNames != null ? suggest(operand.literal(), abilityNames) : List.of();
+            warn(operand.source(), operand.lineNumber(), operand.column(), "the name of an ability",
+                    "\"" + operand.literal() + "\"", suggestions);
+            return abilitySet;
+        }
+        abilitySet.set(id);
+        return abilitySet;
+    }
+
+    /**
+     * @return the abilities the selector refers to, which must not be modified
+     */
+    private BitSet select(Operand operand) {
+        BitSet selected = symbols.select(operand.literal());
+        if (selected == null) {
+            warn(operand.source(), operand.lineNumber(), operand.column(), "an element or ability type",
+                    "\"@" + operand.literal() + "\"", suggest(operand.literal(), symbols.getSelectors().keySet()));
+            return new BitSet();
+        }
+        return selected;
+    }
+
+    private void loadCollision(CollisionDeclaration collisionDeclaration, BitSet abilitiesFirst,
+                               BitSet abilitiesSecond, CollisionTable table) {
+        TokenType operator = collisionDeclaration.operator().type();
+        String source = collisionDeclaration.leftOperand().source();
+        int lineNumber = collisionDeclaration.operator().lineNumber();
+        int priority = collisionDeclaration.priority();
+        int interval = collisionDeclaration.interval();
+
+        if (!abilitiesFirst.intersects(abilitiesSecond)) {
+            for (int i = abilitiesFirst.nextSetBit(0); i >= 0; i = abilitiesFirst.nextSetBit(i + 1)) {
+                for (int j = abilitiesSecond.nextSetBit(0); j >= 0; j = abilitiesSecond.nextSetBit(j + 1)) {
+                    table.put(new CollisionRule(i, operator, j, source, lineNumber, priority, interval));
+                    expandedPairs++;
+                }
+            }
+            return;
+        }
+
+        // Pairs between shared abilities come up in both orders. ProjectKorra used to get
+        // both and act on whichever was registered first, which is the order the left side
+        // lists them in, so a pair is skipped if its right ability was listed earlier
+        BitSet listed = new BitSet(symbols.size());
+        for (int i : declaredOrder(collisionDeclaration.leftOperand(), abilitiesFirst)) {
+            for (int j = abilitiesSecond.nextSetBit(0); j >= 0; j = abilitiesSecond.nextSetBit(j + 1)) {
+                if (listed.get(j) && abilitiesSecond.get(i)) {
+                    continue;
+                }
+                table.put(new CollisionRule(i, operator, j, source, lineNumber, priority, interval));
+                expandedPairs++;
+            }
+            listed.set(i);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+/**
+ * A single resolved collision between two abilities, as it will be registered
+ * with ProjectKorra.
+ *
+ * @param first the id of the Ability on the left-hand side of the declaration
+ * @param operator the Operator dictating which abilities are removed
+ * @param second the id of the Ability on the right-hand side of the declaration
+ * @param source the name of the file the declaration producing this rule was found in, or
+ *               null if it is unknown
+ * @param lineNumber the line of the file the declaration was found on
+ * @param priority how early the rule is checked when checks run out of time, higher is earlier
+ * @param interval the number of ticks between checks of the rule
+ */
+public record CollisionRule(int first, TokenType operator, int second, String source, int lineNumber,
+                            int priority, int interval) {
+
+    /**
+     * @return true if the first ability is removed by this collision
+     */
+    public boolean removeFirst() {
+        return operator == TokenType.LESS_THAN || operator == TokenType.EQUAL;
+    }
+
+    /**
+     * @return true if the second ability is removed by this collision
+     */
+    public boolean removeSecond() {
+        return operator == TokenType.GREATER_THAN || operator == TokenType.EQUAL;
+    }
+
+    /**
+     * @return the key of the unordered pair of abilities this rule applies to
+     */
+    public long pairKey() {
+        return CollisionTable.pairKey(first, second);
+    }
+}
@@ -0,0 +1,100 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fully resolved result of a collisions file. Every ability pair appears at
+ * most once, with the last declaration of a pair overriding any earlier ones.
+ * Pairs are keyed by the ids of their abilities in the {@link AbilitySymbolTable}.
+ *<p>
+ * Pairs that were cancelled with the {@code x} operator anywhere in the file are
+ * tracked separately, as they must also be cleared from the collisions other
+ * plugins registered with ProjectKorra.
+ *<p>
+ * Tables can only be filled in by the {@link CollisionCompiler}, and are read-only
+ * afterwards, so a finished table can safely be handed between threads.
+ */
+public class CollisionTable {
+
+    private final Map<Long, CollisionRule> rules;
+    private final Set<Long> removals;
+
+    CollisionTable() {
+        rules = new LinkedHashMap<>();
+        removals = new LinkedHashSet<>();
+    }
+
+    /**
+     * Records a rule in the table, replacing any previous rule for the same pair.
+     *
+     * @param rule the CollisionRule to record
+     */
+    void put(CollisionRule rule) {
+        long pair = rule.pairKey();
+        // Remove first so that the iteration order reflects the last declaration
+        rules.remove(pair);
+        if (rule.operator() == TokenType.X) {
+            removals.add(pair);
+            return;
+        }
+        rules.put(pair, rule);
+    }
+
+    /**
+     * @return the rules that should be registered, in declaration order
+     */
+    public Collection<CollisionRule> getRules() {
+        return Collections.unmodifiableCollection(rules.values());
+    }
+
+    /**
+     * @param pair the key of the unordered pair to look up
+     * @return the rule registered for the pair, or null if there is none
+     */
+    public CollisionRule getRule(long pair) {
+        return rules.get(pair);
+    }
+
+    /**
+     * @return the keys of every pair that was cancelled by an {@code x} declaration
+     */
+    public Set<Long> getRemovals() {
+        return Collections.unmodifiableSet(removals);
+    }
+
+    /**
+     * Packs two ability ids into a single key for their unordered pair.
+     *
+     * @param first the id of one of the abilities
+     * @param second the id of the other ability
+     * @return the same key regardless of the order of the ids
+     */
+    public static long pairKey(int first, int second) {
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param pair a key created by {@link #pairKey(int, int)}
+     * @return the lower of the two ids in the pair
+     */
+    public static int firstOf(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    /**
+     * @param pair a key created by {@link #pairKey(int, int)}
+     * @return the higher of the two ids in the pair
+     */
+    public static int secondOf(long pair) {
+        return (int) pair;
+    }
+}
@@ -0,0 +1,169 @@
+package me.kwilson272.collisionutility.compiler;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable table from unordered pairs of ability ids to the outcome of their
+ * collision, for lookups that must not lock or allocate.
+ *<p>
+ * Pairs are keyed by {@link CollisionTable#pairKey(int, int)} in an open addressing
+ * table of primitive arrays. Outcomes are stored relative to the lower id of the pair,
+ * and flipped on lookup to match the order the ids were passed in. Once built, an index
+ * can be read from any number of threads.
+ */
+public final class PairIndex {
+
+    /**
+     * Set in an outcome when the two abilities collide.
+     */
+    public static final int COLLIDES = 1;
+    /**
+     * Set in an outcome when the first ability of the lookup is removed by the collision.
+     */
+    public static final int REMOVES_FIRST = 2;
+    /**
+     * Set in an outcome when the second ability of the lookup is removed by the collision.
+     */
+    public static final int REMOVES_SECOND = 4;
+
+    private static final long EMPTY = -1L;
+    private static final PairIndex NONE = builder().build();
+
+    private final long[] keys;
+    private final byte[] outcomes;
+    private final int mask;
+    private final int size;
+
+    private PairIndex(Map<Long, Integer> pairs) {
+        int capacity = Integer.highestOneBit(Math.max(pairs.size(), 1) * 2) * 2;
+        keys = new long[capacity];
+        outcomes = new byte[capacity];
+        mask = capacity - 1;
+        size = pairs.size();
+        Arrays.fill(keys, EMPTY);
+        for (Map.Entry<Long, Integer> pair : pairs.entrySet()) {
+            int slot = slot(pair.getKey());
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = pair.getKey();
+            outcomes[slot] = (byte) pair.getValue().intValue();
+        }
+    }
+
+    /**
+     * @return an index without any pairs
+     */
+    public static PairIndex empty() {
+        return NONE;
+    }
+
+    /**
+     * @return a new Builder for a PairIndex
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds an index of every rule in a compiled table.
+     *
+     * @param table the compiled CollisionTable
+     * @return the new PairIndex
+     */
+    public static PairIndex of(CollisionTable table) {
+        Builder builder = builder();
+        for (CollisionRule rule : table.getRules()) {
+            builder.add(rule.first(), rule.second(), rule.removeFirst(), rule.removeSecond());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Looks up the outcome of a collision between two abilities.
+     *
+     * @param first the id of the first ability
+     * @param second the id of the second ability
+     * @return the {@link #COLLIDES}, {@link #REMOVES_FIRST}, and {@link #REMOVES_SECOND}
+     * flags for the pair in the order passed in, or 0 if the abilities don't collide
+     */
+    public int outcome(int first, int second) {
+        if (first < 0 || second < 0) {
+            return 0;
+        }
+        long key = CollisionTable.pairKey(first, second);
+        int slot = slot(key);
+        long stored;
+        while ((stored = keys[slot]) != EMPTY) {
+            if (stored == key) {
+                int outcome = outcomes[slot];
+                return first <= second ? outcome : flip(outcome);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of pairs in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static int flip(int outcome) {
+        return (outcome & COLLIDES) | ((outcome & REMOVES_FIRST) << 1) | ((outcome & REMOVES_SECOND) >> 1);
+    }
+
+    /**
+     * Collects the pairs for a new PairIndex.
+     */
+    public static class Builder {
+
+        private final Map<Long, Integer> pairs;
+
+        private Builder() {
+            pairs = new LinkedHashMap<>();
+        }
+
+        /**
+         * Adds a collision between two abilities. If the pair was already added, the
+         * outcomes are combined, the way ProjectKorra applies every collision registered
+         * for a pair. An ability colliding with itself can end up on either side.
+         *
+         * @param first the id of the first ability
+         * @param second the id of the second ability
+         * @param removeFirst true if the first ability is removed by the collision
+         * @param removeSecond true if the second ability is removed by the collision
+         * @return this Builder
+         */
+        public Builder add(int first, int second, boolean removeFirst, boolean removeSecond) {
+            if (first < 0 || second < 0) {
+                throw new IllegalArgumentException("Ability ids must not be negative");
+            }
+            int outcome = COLLIDES | (removeFirst ? REMOVES_FIRST : 0) | (removeSecond ? REMOVES_SECOND : 0);
+            if (first > second) {
+                outcome = flip(outcome);
+            } else if (first == second) {
+                // ProjectKorra tests both orientations when an ability collides with itself
+                outcome |= flip(outcome);
+            }
+            pairs.merge(CollisionTable.pairKey(first, second), outcome, (a, b) -> a | b);
+            return this;
+        }
+
+        /**
+         * @return the finished PairIndex
+         */
+        public PairIndex build() {
+            return new PairIndex(pairs);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds collision declarations that have no effect on the compiled table, or that
+ * declare pairs more than once.
+ *<p>
+ * Declarations are walked from the last to the first, while the partners each ability
+ * has been declared with further down the file are kept as bitsets. This lets every
+ * declaration be checked against all of the declarations after it without expanding
+ * any pairs.
+ *<p>
+ * Cancelled pairs are also cleared from the collisions of other plugins, so an
+ * {@code x} declaration only has no effect if each of its pairs is cancelled again
+ * further down.
+ */
+class RuleAnalyzer {
+
+    private final BitSet[] declaredLater;
+    private final BitSet[] cancelledLater;
+    private final BitSet scratch;
+
+    /**
+     * @param abilityCount the number of abilities in the AbilitySymbolTable
+     */
+    RuleAnalyzer(int abilityCount) {
+        declaredLater = new BitSet[abilityCount];
+        cancelledLater = new BitSet[abilityCount];
+        scratch = new BitSet(abilityCount);
+    }
+
+    /**
+     * Analyzes the declarations of a file. An analyzer should only be used once.
+     *
+     * @param declarations the collision declarations, in the order they were declared
+     * @param lefts the abilities on the left of each declaration
+     * @param rights the abilities on the right of each declaration
+     * @param findings the List to add findings to, in declaration order
+     * @return the indices of the declarations that can be skipped without changing the table
+     */
+    BitSet analyze(List<CollisionDeclaration> declarations, BitSet[] lefts, BitSet[] rights,
+                   List<RuleFinding> findings) {
+        BitSet redundant = new BitSet(declarations.size());
+        List<RuleFinding> found = new ArrayList<>();
+        for (int i = declarations.size() - 1; i >= 0; i--) {
+            CollisionDeclaration declaration = declarations.get(i);
+            TokenType operator = declaration.operator().type();
+            String source = declaration.leftOperand().source();
+            int lineNumber = declaration.operator().lineNumber();
+            String line = describeLine(source, lineNumber);
+            BitSet left = lefts[i];
+            BitSet right = rights[i];
+
+            if (left.isEmpty() || right.isEmpty()) {
+                found.add(new RuleFinding(RuleFinding.Kind.EMPTY, source, lineNumber, 0,
+                        capitalize(line) + " does not declare any pairs"));
+                redundant.set(i);
+                continue;
+            }
+
+            boolean cancels = operator == TokenType.X;
+            if (isCovered(cancels ? cancelledLater : declaredLater, left, right)) {
+                int pairs = left.cardinality() * right.cardinality();
+                found.add(new RuleFinding(RuleFinding.Kind.SHADOWED, source, lineNumber, pairs,
+                        "Every pair on " + line + " is " + (cancels ? "cancelled" : "declared")
+                                + " again later, so the line has no effect"));
+                redundant.set(i);
+                continue;
+            }
+            cover(declaredLater, left, right);
+            if (cancels) {
+                cover(cancelledLater, left, right);
+            }
+
+            scratch.clear();
+            scratch.or(left);
+            scratch.and(right);
+            int shared = scratch.cardinality();
+            if (shared > 1) {
+                int pairs = shared * (shared - 1) / 2;
+                if (isSymmetric(operator)) {
+                    found.add(new RuleFinding(RuleFinding.Kind.DUPLICATE_PAIRS, source, lineNumber, pairs,
+                            capitalize(line) + " declares " + pairs + " pairs twice, as both sides share "
+                                    + shared + " abilities"));
+                } else {
+                    found.add(new RuleFinding(RuleFinding.Kind.CONFLICTING_PAIRS, source, lineNumber, pairs,
+                            capitalize(line) + " declares " + pairs + " pairs in both directions, as both sides "
+                                    + "share " + shared + " abilities, only the first direction of each pair is used"));
+                }
+            }
+        }
+
+        // Declarations were walked backwards, and have at most one finding each
+        Collections.reverse(found);
+        findings.addAll(found);
+        return redundant;
+    }
+
+    /**
+     * @return where a declaration is, such as {@code line 3 of fire.txt}
+     */
+    private static String describeLine(String source, int lineNumber) {
+        return source != null ? "line " + lineNumber + " of " + source : "line " + lineNumber;
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    /**
+     * @return true if the operator removes both abilities or neither, so the order of a pair
+     * doesn't matter
+     */
+    static boolean isSymmetric(TokenType operator) {
+        return operator != TokenType.GREATER_THAN && operator != TokenType.LESS_THAN;
+    }
+
+    /**
+     * Checks if every pair between the two sets is already marked in the partners.
+     */
+    private boolean isCovered(BitSet[] partners, BitSet left, BitSet right) {
+        for (int i = left.nextSetBit(0); i >= 0; i = left.nextSetBit(i + 1)) {
+            if (partners[i] == null) {
+                return false;
+            }
+            scratch.clear();
+            scratch.or(right);
+            scratch.andNot(partners[i]);
+            if (!scratch.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks every pair between the two sets in the partners of both abilities.
+     */
+    private void cover(BitSet[] partners, BitSet left, BitSet right) {
+        for (int i = left.nextSetBit(0); i >= 0; i = left.nextSetBit(i + 1)) {
+            partners(partners, i).or(right);
+        }
+        for (int i = right.nextSetBit(0); i >= 0; i = right.nextSetBit(i + 1)) {
+            partners(partners, i).or(left);
+        }
+    }
+
+    private BitSet partners(BitSet[] partners, int id) {
+        if (partners[id] == null) {
+            partners[id] = new BitSet(partners.length);
+        }
+        return partners[id];
+    }
+}
@@ -0,0 +1,39 @@
+package me.kwilson272.collisionutility.compiler;
+
+/**
+ * Something the {@link RuleAnalyzer} noticed about a collision declaration that does
+ * not change the compiled table, but costs time to compile or is likely a mistake.
+ *
+ * @param kind what was found
+ * @param source the name of the file the declaration was found in, or null if it is unknown
+ * @param lineNumber the line of the file the declaration was found on
+ * @param pairs the number of pairs the finding applies to
+ * @param message a description of the finding
+ */
+public record RuleFinding(Kind kind, String source, int lineNumber, int pairs, String message) {
+
+    public enum Kind {
+        /**
+         * Every pair of the declaration is declared again later, so the declaration
+         * has no effect. Can be dropped.
+         */
+        SHADOWED,
+        /**
+         * The declaration does not produce any pairs, because its abilities or groups
+         * could not be found or are empty. Can be dropped.
+         */
+        EMPTY,
+        /**
+         * Both sides of a declaration with an operator that removes both or neither
+         * ability share abilities, so pairs between them are declared twice. The second
+         * declaration of each pair can be dropped.
+         */
+        DUPLICATE_PAIRS,
+        /**
+         * Both sides of a declaration with an operator that only removes one ability share
+         * abilities, so pairs between them are declared in both directions and only the
+         * first direction is used. Kept as is.
+         */
+        CONFLICTING_PAIRS
+    }
+}
@@ -0,0 +1,506 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the collisions between a snapshot of ability instances without touching
+ * ProjectKorra or Bukkit.
+ *<p>
+ * Candidate pairs come from a {@link SpatialHash}, and are expanded into one check per
+ * applicable rule. Checks are ordered by rule, then by the instance on each side, which
+ * is the order ProjectKorra's CollisionManager walks them in. Each check is then tested
+ * exactly the way ProjectKorra tests it, so the same contacts are found.
+ *<p>
+ * Rules are only checked on the rounds they are due, see {@link RuleSet#isDue(int, int)}.
+ * Rounds are counted by the detector, one per call to detect.
+ *<p>
+ * When a ForkJoinPool is provided, the checks are grouped by the world and region of
+ * their first instance and tested in parallel. Contacts are still collected in the same
+ * order afterwards, so the result is identical to testing on a single thread.
+ *<p>
+ * If {@link RuleCounters} are provided, the checks, contacts, and time spent are
+ * recorded per rule. On a single thread, consecutive checks of a rule are timed
+ * together, while in parallel each check has to be timed on its own.
+ *<p>
+ * A detector can also be given a budget, which caps how long a single round may take.
+ * Checks are then tested from the highest rule priority down. Whatever is left once
+ * the budget runs out is deferred, and its priority rises by one for every round it
+ * has been deferred, so that the oldest checks go first and low priority checks are
+ * never starved. Checks are recognised across rounds through the keys of their
+ * instances, and are only tested again while their instances are still close enough
+ * to be checked. A deferred check is carried over even to rounds its rule isn't due on,
+ * so rules with an interval age the same way as every other rule. The contacts that
+ * were found are still collected in the usual order.
+ *<p>
+ * Resolving the contacts is left to the caller, since removing an instance affects
+ * which of the later contacts still apply.
+ */
+public class CollisionDetector implements ContactDetector {
+
+    private static final int INSTANCE_BITS = 21;
+    private static final int MAX_INSTANCES = 1 << INSTANCE_BITS;
+    private static final int MAX_RULES = 1 << (63 - 2 * INSTANCE_BITS);
+    private static final long INSTANCE_MASK = MAX_INSTANCES - 1;
+    private static final double REGION_SIZE = 64;
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final int CHECKS_PER_TASK = 128;
+    private static final int CHECKS_PER_BUDGET_STEP = 32;
+    private static final int MAX_PRIORITY = 1 << 14;
+    private static final long NOT_TESTED = -2L;
+
+    private final SpatialHash broadphase;
+    private final ForkJoinPool pool;
+    private long[] checks;
+    private int checkCount;
+    private long[] partitions;
+    private long[] results;
+    private long[] resultNanos;
+
+    private int round;
+    private boolean[] dueRules;
+    private boolean[] rulesWithDeferred;
+    private long budgetNanos;
+    private RuleSet deferredRules;
+    private DeferredChecks deferred;
+    private DeferredChecks nextDeferred;
+    private int[] deferredPerRule;
+    private long[] checkKeys;
+    private int testedCount;
+    private int deferredCount;
+    private int oldestDeferral;
+
+    /**
+     * Creates a detector that tests every check on the calling thread.
+     *
+     * @param cellSize the width of a single broadphase cell in blocks
+     */
+    public CollisionDetector(double cellSize) {
+        this(cellSize, null);
+    }
+
+    /**
+     * @param cellSize the width of a single broadphase cell in blocks
+     * @param pool the ForkJoinPool to test checks on, or null to test them on the calling thread
+     */
+    public CollisionDetector(double cellSize, ForkJoinPool pool) {
+        broadphase = new SpatialHash(cellSize);
+        this.pool = pool;
+        checks = new long[256];
+        partitions = new long[0];
+        results = new long[0];
+        resultNanos = new long[0];
+        deferred = new DeferredChecks();
+        nextDeferred = new DeferredChecks();
+        checkKeys = new long[0];
+        dueRules = new boolean[0];
+        rulesWithDeferred = new boolean[0];
+        deferredPerRule = new int[0];
+    }
+
+    /**
+     * Caps the time a single call to detect may spend, deferring any checks that don't
+     * fit to later calls.
+     *
+     * @param budgetNanos the budget in nanoseconds, or 0 to always test every check
+     */
+    public void setBudget(long budgetNanos) {
+        this.budgetNanos = Math.max(budgetNanos, 0);
+        deferred.clear();
+        deferredRules = null;
+    }
+
+    /**
+     * @return the budget in nanoseconds, or 0 if every check is always tested
+     */
+    public long getBudget() {
+        return budgetNanos;
+    }
+
+    /**
+     * @return the number of checks that were tested during the last round
+     */
+    public int getTestedCount() {
+        return testedCount;
+    }
+
+    /**
+     * @return the number of checks that were deferred during the last round because the
+     * budget ran out
+     */
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * @return the number of rounds in a row the longest deferred check has now gone
+     * untested, or 0 if nothing was deferred during the last round
+     */
+    public int getOldestDeferral() {
+        return oldestDeferral;
+    }
+
+    /**
+     * Finds every contact between the instances in the snapshot.
+     *
+     * @param snapshot the instances to check
+     * @param rules the RuleSet describing which types collide
+     * @param certainNoCollisionDistance the distance at which ProjectKorra stops checking
+     *                                   the rest of a pair's locations
+     * @param contacts the ContactList to clear and fill, in the order they should be resolved
+     */
+    @Override
+    public void detect(InstanceSnapshot snapshot, RuleSet rules, double certainNoCollisionDistance,
+                       ContactList contacts) {
+        detect(snapshot, rules, certainNoCollisionDistance, contacts, null);
+    }
+
+    /**
+     * Finds every contact between the instances in the snapshot, recording how much each
+     * rule cost.
+     *
+     * @param snapshot the instances to check
+     * @param rules the RuleSet describing which types collide
+     * @param certainNoCollisionDistance the distance at which ProjectKorra stops checking
+     *                                   the rest of a pair's locations
+     * @param contacts the ContactList to clear and fill, in the order they should be resolved
+     * @param counters the RuleCounters to reset and fill, or null to not record anything
+     */
+    public void detect(InstanceSnapshot snapshot, RuleSet rules, double certainNoCollisionDistance,
+                       ContactList contacts, RuleCounters counters) {
+        long startNanos = System.nanoTime();
+        contacts.clear();
+        if (counters != null) {
+            counters.reset(rules.size());
+        }
+        if (snapshot.size() > MAX_INSTANCES || rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("Too many instances or rules to detect collisions between");
+        }
+
+        round++;
+        collectChecks(snapshot, rules);
+        double certainNoCollisionSquared = certainNoCollisionDistance * certainNoCollisionDistance;
+        if (budgetNanos > 0) {
+            testWithinBudget(snapshot, rules, certainNoCollisionSquared, counters != null, startNanos + budgetNanos);
+            for (int i = 0; i < checkCount; i++) {
+                if (results[i] == NOT_TESTED) {
+                    continue;
+                }
+                addContact(contacts, checks[i], results[i]);
+                if (counters != null) {
+                    counters.record(checkRule(checks[i]), 1, results[i] != -1L ? 1 : 0, resultNanos[i]);
+                }
+            }
+            return;
+        }
+
+        testedCount = checkCount;
+        deferredCount = 0;
+        oldestDeferral = 0;
+        if (pool != null && checkCount >= PARALLEL_THRESHOLD) {
+            testInParallel(snapshot, certainNoCollisionSquared, counters != null);
+            for (int i = 0; i < checkCount; i++) {
+                addContact(contacts, checks[i], results[i]);
+                if (counters != null) {
+                    counters.record(checkRule(checks[i]), 1, results[i] != -1L ? 1 : 0, resultNanos[i]);
+                }
+            }
+            return;
+        }
+
+        if (counters != null) {
+            testTimed(snapshot, certainNoCollisionSquared, contacts, counters);
+            return;
+        }
+        for (int i = 0; i < checkCount; i++) {
+            long check = checks[i];
+            addContact(contacts, check, test(snapshot, checkFirst(check), checkSecond(check), certainNoCollisionSquared));
+        }
+    }
+
+    /**
+     * Tests every check on the calling thread, timing each run of checks for the same rule.
+     */
+    private void testTimed(InstanceSnapshot snapshot, double certainNoCollisionSquared, ContactList contacts,
+                           RuleCounters counters) {
+        int runStart = 0;
+        int runHits = 0;
+        long runStartNanos = System.nanoTime();
+        for (int i = 0; i < checkCount; i++) {
+            long check = checks[i];
+            if (checkRule(check) != checkRule(checks[runStart])) {
+                long now = System.nanoTime();
+                counters.record(checkRule(checks[runStart]), i - runStart, runHits, now - runStartNanos);
+                runStart = i;
+                runHits = 0;
+                runStartNanos = now;
+            }
+            long contact = test(snapshot, checkFirst(check), checkSecond(check), certainNoCollisionSquared);
+            if (contact != -1L) {
+                addContact(contacts, check, contact);
+                runHits++;
+            }
+        }
+        if (checkCount > 0) {
+            counters.record(checkRule(checks[runStart]), checkCount - runStart, runHits,
+                    System.nanoTime() - runStartNanos);
+        }
+    }
+
+    /**
+     * Tests checks in order of their priority plus the rounds they have been deferred for,
+     * until the deadline passes. The result of every check that wasn't reached is left
+     * as NOT_TESTED. At least one step of checks is always tested, so a round is never
+     * skipped entirely.
+     */
+    private void testWithinBudget(InstanceSnapshot snapshot, RuleSet rules, double certainNoCollisionSquared,
+                                  boolean timed, long deadline) {
+        if (rules != deferredRules) {
+            // Rule numbers are only meaningful within a single RuleSet
+            deferred.clear();
+            deferredRules = rules;
+            deferredPerRule = new int[rules.size()];
+        }
+        ensureCapacity();
+
+        for (int i = 0; i < checkCount; i++) {
+            long check = checks[i];
+            int rule = checkRule(check);
+            long key = DeferredChecks.key(rule, snapshot.key(checkFirst(check)), snapshot.key(checkSecond(check)));
+            int age = Math.min(round - deferred.get(key, round), MAX_PRIORITY);
+            int priority = Math.max(-MAX_PRIORITY, Math.min(MAX_PRIORITY, rules.priority(rule))) + age;
+            // Higher priorities sort first, ties keep the usual order
+            partitions[i] = ((long) (2 * MAX_PRIORITY - priority) << 32) | i;
+            checkKeys[i] = key;
+            results[i] = NOT_TESTED;
+        }
+        Arrays.sort(partitions, 0, checkCount);
+
+        int step = pool != null ? pool.getParallelism() * CHECKS_PER_TASK : CHECKS_PER_BUDGET_STEP;
+        int tested = 0;
+        while (tested < checkCount) {
+            int end = Math.min(checkCount, tested + step);
+            if (pool != null && end - tested > CHECKS_PER_TASK) {
+                pool.invoke(new TestTask(snapshot, certainNoCollisionSquared, timed, tested, end));
+            } else {
+                testPartitions(snapshot, certainNoCollisionSquared, timed, tested, end);
+            }
+            tested = end;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+
+        nextDeferred.clear();
+        Arrays.fill(deferredPerRule, 0);
+        oldestDeferral = 0;
+        for (int i = tested; i < checkCount; i++) {
+            int index = (int) partitions[i];
+            long key = checkKeys[index];
+            int deferredSince = deferred.get(key, round);
+            nextDeferred.put(key, deferredSince);
+            deferredPerRule[checkRule(checks[index])]++;
+            oldestDeferral = Math.max(oldestDeferral, round - deferredSince + 1);
+        }
+        DeferredChecks swap = deferred;
+        deferred = nextDeferred;
+        nextDeferred = swap;
+        testedCount = tested;
+        deferredCount = checkCount - tested;
+    }
+
+    private void ensureCapacity() {
+        if (partitions.length < checkCount) {
+            partitions = new long[checkCount];
+            results = new long[checkCount];
+            resultNanos = new long[checkCount];
+            checkKeys = new long[checkCount];
+        }
+    }
+
+    private void addContact(ContactList contacts, long check, long contact) {
+        if (contact != -1L) {
+            contacts.add(checkRule(check), checkFirst(check), checkSecond(check),
+                    (int) (contact >>> 32), (int) contact);
+        }
+    }
+
+    /**
+     * Tests every check on the pool, storing each result at the same index as its check.
+     * Checks are sorted by region first, so that each task mostly works on instances
+     * that are close together.
+     */
+    private void testInParallel(InstanceSnapshot snapshot, double certainNoCollisionSquared, boolean timed) {
+        ensureCapacity();
+        for (int i = 0; i < checkCount; i++) {
+            partitions[i] = ((long) regionOf(snapshot, checkFirst(checks[i])) << 32) | i;
+        }
+        Arrays.sort(partitions, 0, checkCount);
+        pool.invoke(new TestTask(snapshot, certainNoCollisionSquared, timed, 0, checkCount));
+    }
+
+    /**
+     * Hashes the world and region of an instance's first location into a partition key.
+     * Instances without any locations all share partition 0.
+     */
+    private static int regionOf(InstanceSnapshot snapshot, int instance) {
+        int location = snapshot.locationStart(instance);
+        if (location == snapshot.locationEnd(instance)) {
+            return 0;
+        }
+        int regionX = (int) Math.floor(snapshot.x(location) / REGION_SIZE);
+        int regionZ = (int) Math.floor(snapshot.z(location) / REGION_SIZE);
+        return (snapshot.world(location) * 31 + regionX) * 31 + regionZ;
+    }
+
+    /**
+     * Tests a range of the partitioned checks, splitting it until each task is small.
+     * ForkJoinTask is Serializable, but tasks are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class TestTask extends RecursiveAction {
+
+        private final InstanceSnapshot snapshot;
+        private final double certainNoCollisionSquared;
+        private final boolean timed;
+        private final int start;
+        private final int end;
+
+        private TestTask(InstanceSnapshot snapshot, double certainNoCollisionSquared, boolean timed,
+                         int start, int end) {
+            this.snapshot = snapshot;
+            this.certainNoCollisionSquared = certainNoCollisionSquared;
+            this.timed = timed;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > CHECKS_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new TestTask(snapshot, certainNoCollisionSquared, timed, start, middle),
+                        new TestTask(snapshot, certainNoCollisionSquared, timed, middle, end));
+                return;
+            }
+            testPartitions(snapshot, certainNoCollisionSquared, timed, start, end);
+        }
+    }
+
+    /**
+     * Tests a range of the partitioned checks, storing each result at the same index as
+     * its check.
+     */
+    private void testPartitions(InstanceSnapshot snapshot, double certainNoCollisionSquared, boolean timed,
+                                int start, int end) {
+        for (int i = start; i < end; i++) {
+            int index = (int) partitions[i];
+            long check = checks[index];
+            long startNanos = timed ? System.nanoTime() : 0;
+            results[index] = test(snapshot, checkFirst(check), checkSecond(check), certainNoCollisionSquared);
+            if (timed) {
+                resultNanos[index] = System.nanoTime() - startNanos;
+            }
+        }
+    }
+
+    /**
+     * Expands the broadphase candidates into one check per applicable rule that is due this
+     * round, oriented so that the first instance is of the rule's first type. Rules that
+     * aren't due only get the checks they had deferred.
+     */
+    private void collectChecks(InstanceSnapshot snapshot, RuleSet rules) {
+        checkCount = 0;
+        if (dueRules.length < rules.size()) {
+            dueRules = new boolean[rules.size()];
+            rulesWithDeferred = new boolean[rules.size()];
+        }
+        boolean carryOver = budgetNanos > 0 && rules == deferredRules;
+        boolean anyDue = false;
+        for (int rule = 0; rule < rules.size(); rule++) {
+            dueRules[rule] = rules.isDue(rule, round);
+            rulesWithDeferred[rule] = carryOver && !dueRules[rule] && deferredPerRule[rule] > 0;
+            anyDue |= dueRules[rule] || rulesWithDeferred[rule];
+        }
+        if (!anyDue) {
+            return;
+        }
+
+        int candidates = broadphase.collect(snapshot, rules);
+        for (int i = 0; i < candidates; i++) {
+            long candidate = broadphase.candidate(i);
+            int a = (int) (candidate >>> 32);
+            int b = (int) candidate;
+            for (int rule : rules.rules(snapshot.type(a), snapshot.type(b))) {
+                if (!dueRules[rule] && !rulesWithDeferred[rule]) {
+                    continue;
+                }
+                if (rules.firstType(rule) == rules.secondType(rule)) {
+                    // ProjectKorra checks both orientations when a type collides with itself
+                    addCheck(snapshot, rule, a, b);
+                    addCheck(snapshot, rule, b, a);
+                } else if (rules.firstType(rule) == snapshot.type(a)) {
+                    addCheck(snapshot, rule, a, b);
+                } else {
+                    addCheck(snapshot, rule, b, a);
+                }
+            }
+        }
+        Arrays.sort(checks, 0, checkCount);
+    }
+
+    private void addCheck(InstanceSnapshot snapshot, int rule, int first, int second) {
+        if (!dueRules[rule]
+                && !deferred.contains(DeferredChecks.key(rule, snapshot.key(first), snapshot.key(second)))) {
+            return;
+        }
+        if (checkCount == checks.length) {
+            checks = Arrays.copyOf(checks, checkCount * 2);
+        }
+        checks[checkCount++] = ((long) rule << (2 * INSTANCE_BITS)) | ((long) first << INSTANCE_BITS) | second;
+    }
+
+    private static int checkRule(long check) {
+        return (int) (check >>> (2 * INSTANCE_BITS));
+    }
+
+    private static int checkFirst(long check) {
+        return (int) ((check >>> INSTANCE_BITS) & INSTANCE_MASK);
+    }
+
+    private static int checkSecond(long check) {
+        return (int) (check & INSTANCE_MASK);
+    }
+
+    /**
+     * Tests two instances the same way ProjectKorra does. Locations are compared in order,
+     * and the first pair within range is a collision. The first pair that is at least the
+     * certain no collision distance apart ends the test without a collision, even if a
+     * later pair would have been in range.
+     *
+     * @return the touching locations, with the first instance's in the upper 32 bits,
+     * or -1 if the instances don't collide
+     */
+    static long test(InstanceSnapshot snapshot, int first, int second, double certainNoCollisionSquared) {
+        double requiredDistance = snapshot.radius(first) + snapshot.radius(second);
+        double requiredSquared = requiredDistance * requiredDistance;
+        for (int i = snapshot.locationStart(first); i < snapshot.locationEnd(first); i++) {
+            for (int j = snapshot.locationStart(second); j < snapshot.locationEnd(second); j++) {
+                if (snapshot.world(i) != snapshot.world(j)) {
+                    continue;
+                }
+                double dx = snapshot.x(i) - snapshot.x(j);
+                double dy = snapshot.y(i) - snapshot.y(j);
+                double dz = snapshot.z(i) - snapshot.z(j);
+                double distanceSquared = dx * dx + dy * dy + dz * dz;
+                if (distanceSquared <= requiredSquared) {
+                    return ((long) i << 32) | j;
+                } else if (distanceSquared >= certainNoCollisionSquared) {
+                    return -1L;
+                }
+            }
+        }
+        return -1L;
+    }
+}
@@ -0,0 +1,23 @@
+package me.kwilson272.collisionutility.detection;
+
+/**
+ * Finds the contacts between a snapshot of ability instances. Every implementation must
+ * find the contacts ProjectKorra's CollisionManager would, in the order it would resolve
+ * them, so that one can be swapped for another without changing what collides.
+ *<p>
+ * Rules are only checked on the rounds they are due, see {@link RuleSet#isDue(int, int)}.
+ * Rounds are counted by the detector, one per call to detect.
+ */
+public interface ContactDetector {
+
+    /**
+     * Finds every contact between the instances in the snapshot.
+     *
+     * @param snapshot the instances to check
+     * @param rules the RuleSet describing which types collide
+     * @param certainNoCollisionDistance the distance at which ProjectKorra stops checking
+     *                                   the rest of a pair's locations
+     * @param contacts the ContactList to clear and fill, in the order they should be resolved
+     */
+    void detect(InstanceSnapshot snapshot, RuleSet rules, double certainNoCollisionDistance, ContactList contacts);
+}
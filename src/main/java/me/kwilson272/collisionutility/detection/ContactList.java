@@ -0,0 +1,86 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * The collisions found by a round of detection, in the order they should be resolved.
+ * Each contact records the rule that applies, the instance on each side of the rule,
+ * and the pair of locations that were found to be touching.
+ */
+public class ContactList {
+
+    private int size;
+    private int[] rules;
+    private int[] firsts;
+    private int[] seconds;
+    private int[] firstLocations;
+    private int[] secondLocations;
+
+    public ContactList() {
+        rules = new int[32];
+        firsts = new int[32];
+        seconds = new int[32];
+        firstLocations = new int[32];
+        secondLocations = new int[32];
+    }
+
+    /**
+     * Removes every contact, keeping the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a contact to the list.
+     *
+     * @param rule the number of the rule in the RuleSet
+     * @param first the instance on the first side of the rule
+     * @param second the instance on the second side of the rule
+     * @param firstLocation the location of the first instance that was touching
+     * @param secondLocation the location of the second instance that was touching
+     */
+    public void add(int rule, int first, int second, int firstLocation, int secondLocation) {
+        if (size == rules.length) {
+            int capacity = size * 2;
+            rules = Arrays.copyOf(rules, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+            firstLocations = Arrays.copyOf(firstLocations, capacity);
+            secondLocations = Arrays.copyOf(secondLocations, capacity);
+        }
+        rules[size] = rule;
+        firsts[size] = first;
+        seconds[size] = second;
+        firstLocations[size] = firstLocation;
+        secondLocations[size] = secondLocation;
+        size++;
+    }
+
+    /**
+     * @return the number of contacts
+     */
+    public int size() {
+        return size;
+    }
+
+    public int rule(int index) {
+        return rules[index];
+    }
+
+    public int first(int index) {
+        return firsts[index];
+    }
+
+    public int second(int index) {
+        return seconds[index];
+    }
+
+    public int firstLocation(int index) {
+        return firstLocations[index];
+    }
+
+    public int secondLocation(int index) {
+        return secondLocations[index];
+    }
+}
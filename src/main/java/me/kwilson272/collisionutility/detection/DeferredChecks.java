@@ -0,0 +1,107 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the tick each deferred check was first deferred on, keyed by a hash of the
+ * check's rule and instance keys.
+ */
+class DeferredChecks {
+
+    private long[] keys;
+    private int[] ticks;
+    private int size;
+
+    DeferredChecks() {
+        keys = new long[64];
+        ticks = new int[64];
+    }
+
+    /**
+     * Hashes a check into a key. The key is never 0, which marks an empty slot.
+     */
+    static long key(int rule, long firstKey, long secondKey) {
+        long hash = rule * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ firstKey) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ secondKey) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * @return the tick the check was first deferred on, or the provided tick if it wasn't deferred
+     */
+    int get(long key, int tick) {
+        if (size == 0) {
+            return tick;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return ticks[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return tick;
+    }
+
+    /**
+     * @return true if the check is recorded as deferred
+     */
+    boolean contains(long key) {
+        return get(key, -1) != -1;
+    }
+
+    /**
+     * Records the tick a check was first deferred on, keeping the earliest if it is
+     * already recorded.
+     */
+    void put(long key, int tick) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                ticks[slot] = Math.min(ticks[slot], tick);
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        ticks[slot] = tick;
+        size++;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0L);
+            size = 0;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        return (int) (key >>> 32) & (keys.length - 1);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldTicks = ticks;
+        keys = new long[oldKeys.length * 2];
+        ticks = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[i];
+                ticks[slot] = oldTicks[i];
+            }
+        }
+    }
+}
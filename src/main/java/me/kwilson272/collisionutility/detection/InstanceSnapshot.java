@@ -0,0 +1,178 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * The live ability instances taken into account for a single round of collision
+ * detection, stored as flat primitive arrays.
+ *<p>
+ * Types, owners, and worlds are all ids assigned by whoever fills the snapshot, the
+ * detection code only ever compares them. A snapshot is meant to be cleared and
+ * refilled every tick, so that its arrays are reused rather than reallocated.
+ *<p>
+ * Each instance can also be given a key that stays the same across snapshots, which
+ * lets checks that were deferred on one tick be recognised on the next.
+ */
+public class InstanceSnapshot {
+
+    private int size;
+    private int[] types;
+    private int[] owners;
+    private long[] keys;
+    private double[] radii;
+    private int[] locationStarts;
+
+    private int locationCount;
+    private int[] worlds;
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+
+    public InstanceSnapshot() {
+        types = new int[64];
+        owners = new int[64];
+        keys = new long[64];
+        radii = new double[64];
+        locationStarts = new int[64];
+        worlds = new int[256];
+        xs = new double[256];
+        ys = new double[256];
+        zs = new double[256];
+    }
+
+    /**
+     * Removes every instance from the snapshot, keeping the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+        locationCount = 0;
+    }
+
+    /**
+     * Adds an instance to the snapshot. Any locations added after this belong to the
+     * new instance, until the next instance is added.
+     *
+     * @param type the id of the instance's ability type
+     * @param owner the id of the player that owns the instance
+     * @param radius the collision radius of the instance
+     * @return the index of the new instance
+     */
+    public int addInstance(int type, int owner, double radius) {
+        return addInstance(type, owner, radius, size);
+    }
+
+    /**
+     * Adds an instance to the snapshot with a key that identifies it across snapshots.
+     * Any locations added after this belong to the new instance, until the next instance
+     * is added.
+     *
+     * @param type the id of the instance's ability type
+     * @param owner the id of the player that owns the instance
+     * @param radius the collision radius of the instance
+     * @param key a value that is unique to the instance for as long as it is alive
+     * @return the index of the new instance
+     */
+    public int addInstance(int type, int owner, double radius, long key) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            locationStarts = Arrays.copyOf(locationStarts, capacity);
+        }
+        types[size] = type;
+        owners[size] = owner;
+        keys[size] = key;
+        radii[size] = radius;
+        locationStarts[size] = locationCount;
+        return size++;
+    }
+
+    /**
+     * Adds a location to the most recently added instance.
+     *
+     * @param world the id of the world the location is in
+     * @return the index of the new location
+     */
+    public int addLocation(int world, double x, double y, double z) {
+        if (locationCount == worlds.length) {
+            int capacity = locationCount * 2;
+            worlds = Arrays.copyOf(worlds, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+        }
+        worlds[locationCount] = world;
+        xs[locationCount] = x;
+        ys[locationCount] = y;
+        zs[locationCount] = z;
+        return locationCount++;
+    }
+
+    /**
+     * @return the number of instances in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of locations in the snapshot, across all instances
+     */
+    public int locationCount() {
+        return locationCount;
+    }
+
+    public int type(int instance) {
+        return types[instance];
+    }
+
+    public int owner(int instance) {
+        return owners[instance];
+    }
+
+    /**
+     * @param instance the index of the instance
+     * @return the key the instance was added with, or its index if it was added without one
+     */
+    public long key(int instance) {
+        return keys[instance];
+    }
+
+    public double radius(int instance) {
+        return radii[instance];
+    }
+
+    /**
+     * @param instance the index of the instance
+     * @return the index of the instance's first location
+     */
+    public int locationStart(int instance) {
+        return locationStarts[instance];
+    }
+
+    /**
+     * @param instance the index of the instance
+     * @return the index just past the instance's last location
+     */
+    public int locationEnd(int instance) {
+        return instance + 1 < size ? locationStarts[instance + 1] : locationCount;
+    }
+
+    public int world(int location) {
+        return worlds[location];
+    }
+
+    public double x(int location) {
+        return xs[location];
+    }
+
+    public double y(int location) {
+        return ys[location];
+    }
+
+    public double z(int location) {
+        return zs[location];
+    }
+}
@@ -0,0 +1,179 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads back a recording written by a {@link RecordingWriter}, one tick at a time, so
+ * that a recording can be replayed without holding all of it in memory.
+ */
+public class RecordingReader implements Closeable {
+
+    private final DataInputStream in;
+    private final double certainNoCollisionDistance;
+    private final boolean removeMultipleInstances;
+    private final Map<Integer, String> typeNames;
+    private RuleSet rules;
+
+    /**
+     * Opens the file and reads the header.
+     *
+     * @param path the recording
+     * @throws IOException if the file can't be read or is not a recording this version understands
+     */
+    public RecordingReader(Path path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        try {
+            if (in.readInt() != RecordingWriter.MAGIC) {
+                throw new IOException(path + " is not a collision recording");
+            }
+            int version = in.readUnsignedByte();
+            if (version != RecordingWriter.VERSION) {
+                throw new IOException(path + " was recorded with version " + version
+                        + ", only version " + RecordingWriter.VERSION + " can be read");
+            }
+            certainNoCollisionDistance = in.readDouble();
+            removeMultipleInstances = in.readBoolean();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        typeNames = new HashMap<>();
+        rules = RuleSet.builder().build();
+    }
+
+    /**
+     * @return the distance at which ProjectKorra stopped checking the rest of a pair's locations
+     */
+    public double getCertainNoCollisionDistance() {
+        return certainNoCollisionDistance;
+    }
+
+    /**
+     * @return true if an instance could collide more than once per rule
+     */
+    public boolean isRemoveMultipleInstances() {
+        return removeMultipleInstances;
+    }
+
+    /**
+     * @return the rules in effect for the last tick read, which are empty until the first
+     * rules are read
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * @param type the id of a type
+     * @return the name the type was recorded with, or its id if it was never named
+     */
+    public String getTypeName(int type) {
+        return typeNames.getOrDefault(type, "#" + type);
+    }
+
+    /**
+     * Reads up to and including the next tick.
+     *
+     * @param snapshot the InstanceSnapshot to clear and fill with the tick's instances
+     * @return true if a tick was read, false if the end of the recording was reached
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public boolean next(InstanceSnapshot snapshot) throws IOException {
+        while (true) {
+            int tag = in.read();
+            switch (tag) {
+                case -1 -> {
+                    return false;
+                }
+                case RecordingWriter.TYPE -> {
+                    int id = readVarInt();
+                    typeNames.put(id, in.readUTF());
+                }
+                case RecordingWriter.RULES -> rules = readRules();
+                case RecordingWriter.TICK -> {
+                    readTick(snapshot);
+                    return true;
+                }
+                default -> throw new IOException("Unknown record " + tag + " in the recording");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private RuleSet readRules() throws IOException {
+        RuleSet.Builder builder = RuleSet.builder();
+        int size = readVarInt();
+        for (int i = 0; i < size; i++) {
+            int firstType = readVarInt();
+            int secondType = readVarInt();
+            int flags = in.readUnsignedByte();
+            int priority = unZigZag(readVarInt());
+            int interval = readVarInt();
+            try {
+                builder.addRule(firstType, secondType, (flags & RecordingWriter.REMOVE_FIRST) != 0,
+                        (flags & RecordingWriter.REMOVE_SECOND) != 0, priority, interval);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed rule in the recording", e);
+            }
+        }
+        return builder.build();
+    }
+
+    private void readTick(InstanceSnapshot snapshot) throws IOException {
+        snapshot.clear();
+        int size = readVarInt();
+        for (int instance = 0; instance < size; instance++) {
+            int type = readVarInt();
+            int owner = readVarInt();
+            long key = unZigZag(readVarLong());
+            snapshot.addInstance(type, owner, in.readFloat(), key);
+            int locations = readVarInt();
+            for (int i = 0; i < locations; i++) {
+                snapshot.addLocation(readVarInt(), in.readFloat(), in.readFloat(), in.readFloat());
+            }
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in the recording");
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in the recording");
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,154 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a recording of live ability instances, one {@link InstanceSnapshot} per tick,
+ * so that collision detection can be replayed and benchmarked away from the server.
+ *<p>
+ * A recording starts with a header holding the settings of ProjectKorra's
+ * CollisionManager, followed by a stream of records. Type records name a type id the
+ * first time it is used, rule records replace the {@link RuleSet} from then on, and tick
+ * records hold a snapshot. Ids and counts are written as variable length integers and
+ * coordinates as floats, which keeps a tick of a few hundred instances to a few kilobytes.
+ *<p>
+ * Read recordings back with a {@link RecordingReader}.
+ */
+public class RecordingWriter implements Closeable {
+
+    static final int MAGIC = 0x43555252; // "CURR"
+    static final int VERSION = 1;
+
+    static final int TYPE = 1;
+    static final int RULES = 2;
+    static final int TICK = 3;
+
+    static final int REMOVE_FIRST = 1;
+    static final int REMOVE_SECOND = 2;
+
+    private final DataOutputStream out;
+    private int ticks;
+
+    /**
+     * Creates the file, replacing it if it already exists, and writes the header.
+     *
+     * @param path the file to write to
+     * @param certainNoCollisionDistance the distance at which ProjectKorra stops checking
+     *                                   the rest of a pair's locations
+     * @param removeMultipleInstances true if an instance may collide more than once per rule
+     * @throws IOException if the file can't be written
+     */
+    public RecordingWriter(Path path, double certainNoCollisionDistance, boolean removeMultipleInstances)
+            throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeDouble(certainNoCollisionDistance);
+        out.writeBoolean(removeMultipleInstances);
+    }
+
+    /**
+     * Names a type id, which should be done before the first rule or tick that uses it.
+     *
+     * @param id the id of the type
+     * @param name the name of the type, used when reporting
+     * @throws IOException if the file can't be written
+     */
+    public void writeType(int id, String name) throws IOException {
+        out.writeByte(TYPE);
+        writeVarInt(id);
+        out.writeUTF(name);
+    }
+
+    /**
+     * Replaces the rules every following tick is detected with.
+     *
+     * @param rules the RuleSet
+     * @throws IOException if the file can't be written
+     */
+    public void writeRules(RuleSet rules) throws IOException {
+        out.writeByte(RULES);
+        writeVarInt(rules.size());
+        for (int rule = 0; rule < rules.size(); rule++) {
+            writeVarInt(rules.firstType(rule));
+            writeVarInt(rules.secondType(rule));
+            out.writeByte((rules.removeFirst(rule) ? REMOVE_FIRST : 0) | (rules.removeSecond(rule) ? REMOVE_SECOND : 0));
+            writeVarInt(zigZag(rules.priority(rule)));
+            writeVarInt(rules.interval(rule));
+        }
+    }
+
+    /**
+     * Writes the instances alive on a tick. Ticks without any instances are still written,
+     * so that a replay covers the same stretch of time as the recording.
+     *
+     * @param snapshot the instances
+     * @throws IOException if the file can't be written
+     */
+    public void writeTick(InstanceSnapshot snapshot) throws IOException {
+        out.writeByte(TICK);
+        writeVarInt(snapshot.size());
+        for (int instance = 0; instance < snapshot.size(); instance++) {
+            writeVarInt(snapshot.type(instance));
+            writeVarInt(snapshot.owner(instance));
+            writeVarLong(zigZag(snapshot.key(instance)));
+            out.writeFloat((float) snapshot.radius(instance));
+            writeVarInt(snapshot.locationEnd(instance) - snapshot.locationStart(instance));
+            for (int i = snapshot.locationStart(instance); i < snapshot.locationEnd(instance); i++) {
+                writeVarInt(snapshot.world(i));
+                out.writeFloat((float) snapshot.x(i));
+                out.writeFloat((float) snapshot.y(i));
+                out.writeFloat((float) snapshot.z(i));
+            }
+        }
+        ticks++;
+    }
+
+    /**
+     * @return the number of ticks written so far
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the number of bytes written so far, including any that are still buffered
+     */
+    public int getBytes() {
+        return out.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,124 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * Finds collisions the way ProjectKorra's CollisionManager does, by checking every
+ * instance of a rule's first type against every instance of its second type, one rule
+ * after another. Nothing is skipped based on where the instances are.
+ *<p>
+ * This is far slower than the {@link CollisionDetector} when many instances are alive,
+ * and is meant as the reference other detectors are compared against. It shares none of
+ * the detector's code, including the test of a single pair.
+ */
+public class ReferenceDetector implements ContactDetector {
+
+    private int round;
+    private int[] typeStarts;
+    private int[] byType;
+
+    public ReferenceDetector() {
+        typeStarts = new int[0];
+        byType = new int[0];
+    }
+
+    @Override
+    public void detect(InstanceSnapshot snapshot, RuleSet rules, double certainNoCollisionDistance,
+                       ContactList contacts) {
+        contacts.clear();
+        round++;
+        groupByType(snapshot);
+        double certainNoCollisionSquared = Math.pow(certainNoCollisionDistance, 2);
+        for (int rule = 0; rule < rules.size(); rule++) {
+            if (!rules.isDue(rule, round)) {
+                continue;
+            }
+            int firstType = rules.firstType(rule);
+            int secondType = rules.secondType(rule);
+            for (int i = start(firstType); i < end(firstType); i++) {
+                int first = byType[i];
+                for (int j = start(secondType); j < end(secondType); j++) {
+                    int second = byType[j];
+                    if (first == second || snapshot.owner(first) == snapshot.owner(second)) {
+                        continue;
+                    }
+                    collide(snapshot, rule, first, second, certainNoCollisionSquared, contacts);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the locations of two instances against each other, ported directly from
+     * ProjectKorra's CollisionManager.
+     */
+    private static void collide(InstanceSnapshot snapshot, int rule, int first, int second,
+                                double certainNoCollisionSquared, ContactList contacts) {
+        double requiredDist = snapshot.radius(first) + snapshot.radius(second);
+        double requiredDistSquared = Math.pow(requiredDist, 2);
+        boolean collided = false;
+        boolean certainNoCollision = false;
+        for (int i = snapshot.locationStart(first); i < snapshot.locationEnd(first); i++) {
+            if (collided || certainNoCollision) {
+                break;
+            }
+            for (int j = snapshot.locationStart(second); j < snapshot.locationEnd(second); j++) {
+                if (collided || certainNoCollision) {
+                    break;
+                } else if (snapshot.world(i) != snapshot.world(j)) {
+                    continue;
+                }
+                double distSquared = square(snapshot.x(i) - snapshot.x(j)) + square(snapshot.y(i) - snapshot.y(j))
+                        + square(snapshot.z(i) - snapshot.z(j));
+                if (distSquared <= requiredDistSquared) {
+                    collided = true;
+                    contacts.add(rule, first, second, i, j);
+                } else if (distSquared >= certainNoCollisionSquared) {
+                    certainNoCollision = true;
+                }
+            }
+        }
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * Sorts the instances by type with a counting sort, keeping the order of the snapshot
+     * within each type, which is the order ProjectKorra keeps its instances in.
+     */
+    private void groupByType(InstanceSnapshot snapshot) {
+        int maxType = -1;
+        for (int instance = 0; instance < snapshot.size(); instance++) {
+            maxType = Math.max(maxType, snapshot.type(instance));
+        }
+        if (typeStarts.length < maxType + 2) {
+            typeStarts = new int[maxType + 2];
+        } else {
+            Arrays.fill(typeStarts, 0);
+        }
+        if (byType.length < snapshot.size()) {
+            byType = new int[snapshot.size()];
+        }
+
+        for (int instance = 0; instance < snapshot.size(); instance++) {
+            typeStarts[snapshot.type(instance) + 1]++;
+        }
+        for (int type = 1; type < typeStarts.length; type++) {
+            typeStarts[type] += typeStarts[type - 1];
+        }
+        int[] next = Arrays.copyOf(typeStarts, typeStarts.length);
+        for (int instance = 0; instance < snapshot.size(); instance++) {
+            byType[next[snapshot.type(instance)]++] = instance;
+        }
+    }
+
+    private int start(int type) {
+        return type + 1 < typeStarts.length ? typeStarts[type] : 0;
+    }
+
+    private int end(int type) {
+        return type + 1 < typeStarts.length ? typeStarts[type + 1] : 0;
+    }
+}
@@ -0,0 +1,83 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * Per-rule counts of checks, hits and time for a single round of detection.
+ */
+public class RuleCounters {
+
+    private long[] checks;
+    private long[] hits;
+    private long[] nanos;
+    private int[] touched;
+    private int touchedCount;
+
+    public RuleCounters() {
+        checks = new long[0];
+        hits = new long[0];
+        nanos = new long[0];
+        touched = new int[16];
+    }
+
+    /**
+     * Clears the counters of the previous round and makes room for the provided rules.
+     *
+     * @param ruleCount the number of rules in the RuleSet being detected with
+     */
+    void reset(int ruleCount) {
+        for (int i = 0; i < touchedCount; i++) {
+            int rule = touched[i];
+            if (rule < checks.length) {
+                checks[rule] = 0;
+                hits[rule] = 0;
+                nanos[rule] = 0;
+            }
+        }
+        touchedCount = 0;
+        if (checks.length < ruleCount) {
+            checks = new long[ruleCount];
+            hits = new long[ruleCount];
+            nanos = new long[ruleCount];
+        }
+    }
+
+    void record(int rule, long checkCount, long hitCount, long elapsedNanos) {
+        if (checks[rule] == 0) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = rule;
+        }
+        checks[rule] += checkCount;
+        hits[rule] += hitCount;
+        nanos[rule] += elapsedNanos;
+    }
+
+    /**
+     * @return the number of rules that were checked at least once
+     */
+    public int touchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * @param index an index less than {@link #touchedCount()}
+     * @return the number of a rule that was checked
+     */
+    public int touchedRule(int index) {
+        return touched[index];
+    }
+
+    public long checks(int rule) {
+        return checks[rule];
+    }
+
+    public long hits(int rule) {
+        return hits[rule];
+    }
+
+    public long nanos(int rule) {
+        return nanos[rule];
+    }
+}
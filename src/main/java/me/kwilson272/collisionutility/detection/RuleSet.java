@@ -0,0 +1,248 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, indexed list of collision rules between ability types.
+ *<p>
+ * Rules are numbered in the order they were added, which is the order their
+ * collisions are resolved in. Every unordered pair of types maps to the rules that
+ * apply to it, so the rules for a pair of instances can be found with a single lookup.
+ *<p>
+ * Each rule also has a priority, which decides what is checked first when the
+ * {@link CollisionDetector} can't check everything within its budget, and an interval,
+ * which is the number of rounds between checks of the rule. Rules with the same interval
+ * are spread over different rounds, so that they don't all come due at once.
+ */
+public class RuleSet {
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final int[] firstTypes;
+    private final int[] secondTypes;
+    private final boolean[] removeFirst;
+    private final boolean[] removeSecond;
+    private final int[] priorities;
+    private final int[] intervals;
+    private final int[] phases;
+    private final boolean[] typesWithRules;
+
+    // Open addressing table from a packed pair of types to the rules for that pair
+    private final long[] pairKeys;
+    private final int[][] pairRules;
+
+    private RuleSet(Builder builder) {
+        int size = builder.firstTypes.size();
+        firstTypes = new int[size];
+        secondTypes = new int[size];
+        removeFirst = new boolean[size];
+        removeSecond = new boolean[size];
+        priorities = new int[size];
+        intervals = new int[size];
+        phases = new int[size];
+
+        int maxType = -1;
+        Map<Long, List<Integer>> rulesByPair = new LinkedHashMap<>();
+        for (int rule = 0; rule < size; rule++) {
+            firstTypes[rule] = builder.firstTypes.get(rule);
+            secondTypes[rule] = builder.secondTypes.get(rule);
+            removeFirst[rule] = builder.removeFirst.get(rule);
+            removeSecond[rule] = builder.removeSecond.get(rule);
+            priorities[rule] = builder.priorities.get(rule);
+            intervals[rule] = builder.intervals.get(rule);
+            // Spread the rule numbers with a multiplicative hash, rules from the same line
+            // are numbered one after the other
+            phases[rule] = (int) (((rule * 0x9E3779B97F4A7C15L) >>> 33) % intervals[rule]);
+            maxType = Math.max(maxType, Math.max(firstTypes[rule], secondTypes[rule]));
+            rulesByPair.computeIfAbsent(pairKey(firstTypes[rule], secondTypes[rule]), k -> new ArrayList<>())
+                    .add(rule);
+        }
+
+        typesWithRules = new boolean[maxType + 1];
+        for (int rule = 0; rule < size; rule++) {
+            typesWithRules[firstTypes[rule]] = true;
+            typesWithRules[secondTypes[rule]] = true;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(rulesByPair.size(), 1) * 2) * 2;
+        pairKeys = new long[capacity];
+        pairRules = new int[capacity][];
+        Arrays.fill(pairKeys, -1L);
+        for (Map.Entry<Long, List<Integer>> entry : rulesByPair.entrySet()) {
+            int slot = slot(entry.getKey());
+            while (pairKeys[slot] != -1L) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            pairKeys[slot] = entry.getKey();
+            pairRules[slot] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return a new Builder for a RuleSet
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets every rule that applies to a pair of types, regardless of which side each
+     * type was declared on.
+     *
+     * @param typeA the id of one of the types
+     * @param typeB the id of the other type
+     * @return the rule numbers in ascending order, which must not be modified
+     */
+    public int[] rules(int typeA, int typeB) {
+        long key = pairKey(typeA, typeB);
+        int slot = slot(key);
+        while (pairKeys[slot] != -1L) {
+            if (pairKeys[slot] == key) {
+                return pairRules[slot];
+            }
+            slot = (slot + 1) & (pairKeys.length - 1);
+        }
+        return NO_RULES;
+    }
+
+    /**
+     * @param type the id of a type
+     * @return true if any rule references the type
+     */
+    public boolean hasRules(int type) {
+        return type >= 0 && type < typesWithRules.length && typesWithRules[type];
+    }
+
+    /**
+     * @return the number of rules
+     */
+    public int size() {
+        return firstTypes.length;
+    }
+
+    public int firstType(int rule) {
+        return firstTypes[rule];
+    }
+
+    public int secondType(int rule) {
+        return secondTypes[rule];
+    }
+
+    public boolean removeFirst(int rule) {
+        return removeFirst[rule];
+    }
+
+    public boolean removeSecond(int rule) {
+        return removeSecond[rule];
+    }
+
+    /**
+     * @param rule the number of the rule
+     * @return the priority of the rule, higher priorities are checked first
+     */
+    public int priority(int rule) {
+        return priorities[rule];
+    }
+
+    /**
+     * @param rule the number of the rule
+     * @return the number of rounds between checks of the rule
+     */
+    public int interval(int rule) {
+        return intervals[rule];
+    }
+
+    /**
+     * @param rule the number of the rule
+     * @param round the number of the round, counting up by one every round
+     * @return true if the rule should be checked on the round
+     */
+    public boolean isDue(int rule, int round) {
+        return intervals[rule] == 1 || Math.floorMod(round + phases[rule], intervals[rule]) == 0;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (pairKeys.length - 1);
+    }
+
+    private static long pairKey(int typeA, int typeB) {
+        int low = Math.min(typeA, typeB);
+        int high = Math.max(typeA, typeB);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Collects the rules for a new RuleSet, in the order they should be resolved.
+     */
+    public static class Builder {
+
+        private final List<Integer> firstTypes;
+        private final List<Integer> secondTypes;
+        private final List<Boolean> removeFirst;
+        private final List<Boolean> removeSecond;
+        private final List<Integer> priorities;
+        private final List<Integer> intervals;
+
+        private Builder() {
+            firstTypes = new ArrayList<>();
+            secondTypes = new ArrayList<>();
+            removeFirst = new ArrayList<>();
+            removeSecond = new ArrayList<>();
+            priorities = new ArrayList<>();
+            intervals = new ArrayList<>();
+        }
+
+        /**
+         * Adds a rule between two types.
+         *
+         * @param firstType the id of the type on the first side of the rule, must not be negative
+         * @param secondType the id of the type on the second side of the rule, must not be negative
+         * @param removeFirst true if instances of the first type are removed by the collision
+         * @param removeSecond true if instances of the second type are removed by the collision
+         * @return the number of the new rule
+         */
+        public int addRule(int firstType, int secondType, boolean removeFirst, boolean removeSecond) {
+            return addRule(firstType, secondType, removeFirst, removeSecond, 0, 1);
+        }
+
+        /**
+         * Adds a rule between two types with a priority and an interval.
+         *
+         * @param firstType the id of the type on the first side of the rule, must not be negative
+         * @param secondType the id of the type on the second side of the rule, must not be negative
+         * @param removeFirst true if instances of the first type are removed by the collision
+         * @param removeSecond true if instances of the second type are removed by the collision
+         * @param priority how early the rule is checked when checks run out of time, higher is earlier
+         * @param interval the number of rounds between checks of the rule, must be at least 1
+         * @return the number of the new rule
+         */
+        public int addRule(int firstType, int secondType, boolean removeFirst, boolean removeSecond,
+                           int priority, int interval) {
+            if (firstType < 0 || secondType < 0) {
+                throw new IllegalArgumentException("Type ids must not be negative");
+            }
+            if (interval < 1) {
+                throw new IllegalArgumentException("Intervals must be at least 1");
+            }
+            this.firstTypes.add(firstType);
+            this.secondTypes.add(secondType);
+            this.removeFirst.add(removeFirst);
+            this.removeSecond.add(removeSecond);
+            this.priorities.add(priority);
+            this.intervals.add(interval);
+            return firstTypes.size() - 1;
+        }
+
+        /**
+         * @return the finished RuleSet
+         */
+        public RuleSet build() {
+            return new RuleSet(this);
+        }
+    }
+}
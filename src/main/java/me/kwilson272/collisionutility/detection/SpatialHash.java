@@ -0,0 +1,228 @@
+package me.kwilson272.collisionutility.detection;
+
+import java.util.Arrays;
+
+/**
+ * The broadphase of collision detection. Every location of every instance is bucketed
+ * into the cells of a uniform grid that its collision radius overlaps, and only
+ * instances that share a cell are considered as candidates.
+ *<p>
+ * Two locations can only be within the sum of their radii of each other if the boxes
+ * spanned by their own radii overlap, so no colliding pair is ever missed. Instances
+ * whose radius would cover too many cells are instead paired with every other instance.
+ *<p>
+ * The hash is rebuilt from scratch every time it is used, reusing its arrays.
+ */
+public class SpatialHash {
+
+    private static final int MAX_CELLS_PER_LOCATION = 64;
+
+    private final double cellSize;
+
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int[] cellStamps;
+    private int[] usedSlots;
+    private int usedCount;
+    private int stamp;
+
+    private int[] entryInstances;
+    private int[] entryNext;
+    private int entryCount;
+
+    private int[] largeInstances;
+    private int largeCount;
+
+    private long[] candidates;
+    private int candidateCount;
+
+    /**
+     * @param cellSize the width of a single grid cell in blocks
+     */
+    public SpatialHash(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        cellKeys = new long[256];
+        cellHeads = new int[256];
+        cellStamps = new int[256];
+        usedSlots = new int[128];
+        entryInstances = new int[256];
+        entryNext = new int[256];
+        largeInstances = new int[16];
+        candidates = new long[256];
+    }
+
+    /**
+     * Finds every pair of instances that might collide. Pairs are only included if they
+     * are owned by different players and at least one rule applies to their types.
+     *
+     * @param snapshot the instances to pair up
+     * @param rules the RuleSet deciding which types can collide at all
+     * @return the number of candidates, which can be read through {@link #candidate(int)}
+     */
+    public int collect(InstanceSnapshot snapshot, RuleSet rules) {
+        reset();
+        for (int instance = 0; instance < snapshot.size(); instance++) {
+            if (rules.hasRules(snapshot.type(instance))) {
+                insert(snapshot, instance);
+            }
+        }
+
+        for (int i = 0; i < usedCount; i++) {
+            int slot = usedSlots[i];
+            for (int entry = cellHeads[slot]; entry != -1; entry = entryNext[entry]) {
+                for (int other = entryNext[entry]; other != -1; other = entryNext[other]) {
+                    addCandidate(snapshot, rules, entryInstances[entry], entryInstances[other]);
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            int large = largeInstances[i];
+            for (int instance = 0; instance < snapshot.size(); instance++) {
+                if (instance != large && rules.hasRules(snapshot.type(instance))) {
+                    addCandidate(snapshot, rules, large, instance);
+                }
+            }
+        }
+
+        // Pairs that share several cells are found several times
+        Arrays.sort(candidates, 0, candidateCount);
+        int unique = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if (unique == 0 || candidates[unique - 1] != candidates[i]) {
+                candidates[unique++] = candidates[i];
+            }
+        }
+        candidateCount = unique;
+        return candidateCount;
+    }
+
+    /**
+     * @param index the index of the candidate, less than the count returned by collect
+     * @return the candidate pair, with the lower instance index in the upper 32 bits
+     */
+    public long candidate(int index) {
+        return candidates[index];
+    }
+
+    private void reset() {
+        if (++stamp == 0) {
+            Arrays.fill(cellStamps, 0);
+            stamp = 1;
+        }
+        usedCount = 0;
+        entryCount = 0;
+        largeCount = 0;
+        candidateCount = 0;
+    }
+
+    private void insert(InstanceSnapshot snapshot, int instance) {
+        double radius = snapshot.radius(instance);
+        long span = (long) Math.ceil(2 * radius / cellSize) + 1;
+        if (span * span * span > MAX_CELLS_PER_LOCATION) {
+            if (largeCount == largeInstances.length) {
+                largeInstances = Arrays.copyOf(largeInstances, largeCount * 2);
+            }
+            largeInstances[largeCount++] = instance;
+            return;
+        }
+
+        for (int location = snapshot.locationStart(instance); location < snapshot.locationEnd(instance); location++) {
+            int world = snapshot.world(location);
+            int minX = cell(snapshot.x(location) - radius);
+            int maxX = cell(snapshot.x(location) + radius);
+            int minY = cell(snapshot.y(location) - radius);
+            int maxY = cell(snapshot.y(location) + radius);
+            int minZ = cell(snapshot.z(location) - radius);
+            int maxZ = cell(snapshot.z(location) + radius);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        insert(instance, cellKey(world, x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    private void insert(int instance, long key) {
+        int slot = findSlot(key);
+        if (cellStamps[slot] != stamp) {
+            cellStamps[slot] = stamp;
+            cellKeys[slot] = key;
+            cellHeads[slot] = -1;
+            if (usedCount == usedSlots.length) {
+                usedSlots = Arrays.copyOf(usedSlots, usedCount * 2);
+            }
+            usedSlots[usedCount++] = slot;
+        } else if (cellHeads[slot] != -1 && entryInstances[cellHeads[slot]] == instance) {
+            // Instances are inserted one at a time, so a repeat is always at the head
+            return;
+        }
+
+        if (entryCount == entryInstances.length) {
+            entryInstances = Arrays.copyOf(entryInstances, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryInstances[entryCount] = instance;
+        entryNext[entryCount] = cellHeads[slot];
+        cellHeads[slot] = entryCount++;
+
+        if (usedCount * 2 > cellKeys.length) {
+            rehash();
+        }
+    }
+
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (cellStamps[slot] == stamp && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        int[] oldUsed = Arrays.copyOf(usedSlots, usedCount);
+        int capacity = oldKeys.length * 2;
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        cellStamps = new int[capacity];
+        for (int i = 0; i < oldUsed.length; i++) {
+            int slot = findSlot(oldKeys[oldUsed[i]]);
+            cellStamps[slot] = stamp;
+            cellKeys[slot] = oldKeys[oldUsed[i]];
+            cellHeads[slot] = oldHeads[oldUsed[i]];
+            usedSlots[i] = slot;
+        }
+    }
+
+    private void addCandidate(InstanceSnapshot snapshot, RuleSet rules, int a, int b) {
+        if (a == b || snapshot.owner(a) == snapshot.owner(b)) {
+            return;
+        }
+        if (rules.rules(snapshot.type(a), snapshot.type(b)).length == 0) {
+            return;
+        }
+        if (candidateCount == candidates.length) {
+            candidates = Arrays.copyOf(candidates, candidateCount * 2);
+        }
+        candidates[candidateCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Packs a cell into a single key. Coordinates far outside of any real world wrap
+     * around, which only ever merges cells and so can't cause a collision to be missed.
+     */
+    private static long cellKey(int world, int x, int y, int z) {
+        return ((long) world << 54) | ((long) (y & 0xFFF) << 42) | ((long) (x & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+}
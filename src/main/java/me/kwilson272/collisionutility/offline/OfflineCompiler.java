@@ -0,0 +1,431 @@
+package me.kwilson272.collisionutility.offline;
+
+import me.kwilson272.collisionutility.LoadMetrics;
+import me.kwilson272.collisionutility.compiler.AbilityList;
+import me.kwilson272.collisionutility.compiler.AbilitySymbolTable;
+import me.kwilson272.collisionutility.compiler.CollisionCompiler;
+import me.kwilson272.collisionutility.compiler.CollisionRule;
+import me.kwilson272.collisionutility.compiler.CollisionTable;
+import me.kwilson272.collisionutility.compiler.PairIndex;
+import me.kwilson272.collisionutility.compiler.RuleFinding;
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.RuleFileReader;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Compiles collision files without a server, against an ability list exported with
+ * {@code /cu export}. The files go through the same stages as a load on the server,
+ * and nothing from ProjectKorra or Bukkit is touched.
+ *<p>
+ * The resolved pair table is written to standard out, or to {@code --table}, while the
+ * diagnostics, timings, and allocations of each stage are written to standard error.
+ * Exits with 1 if a line or include could not be parsed, or if the table has more pairs
+ * than {@code --max-pairs}, so changes to the files can be checked before they reach a
+ * server. Run it with {@code ./gradlew compileCollisions --args="..."}.
+ */
+public final class OfflineCompiler {
+
+    private static final String USAGE = """
+            Usage: compileCollisions [options] <collisions file>
+              --abilities <file>   the ability list written by /cu export (default: abilities.txt)
+              --directory <dir>    the collisions directory (default: collisions, next to the file)
+              --table <file>       write the pair table to a file instead of standard out
+              --threads <n>        threads to parse with, 0 for one per core (default: 1)
+              --runs <n>           compile n times and report the last, to time a warm JVM (default: 1)
+              --max-pairs <n>      fail if the table has more than n pairs
+              --analyze            report redundant and conflicting declarations
+              --drop-redundant     skip redundant declarations, as DropRedundantRules does
+              --compact-lexer      read files with the compact lexer
+              --case-insensitive   match aliases regardless of case
+              --strict             fail on any diagnostic, not only on parse errors""";
+
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private final PrintStream report;
+    private Path abilitiesPath;
+    private Path file;
+    private Path directory;
+    private Path tablePath;
+    private int threads = 1;
+    private int runs = 1;
+    private long maxPairs = -1;
+    private boolean analyze;
+    private boolean dropRedundant;
+    private boolean compactLexer;
+    private boolean caseInsensitive;
+    private boolean strict;
+
+    private OfflineCompiler(PrintStream report) {
+        this.report = report;
+    }
+
+    public static void main(String[] args) {
+        OfflineCompiler compiler = new OfflineCompiler(System.err);
+        String error = compiler.parseArguments(args);
+        if (error != null) {
+            System.err.println(error);
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        try {
+            System.exit(compiler.run());
+        } catch (IOException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    /**
+     * @return a description of what is wrong with the arguments, or null if they are valid
+     */
+    private String parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (file != null) {
+                    return "Only one collisions file can be compiled at a time";
+                }
+                file = Path.of(arg);
+                continue;
+            }
+            switch (arg) {
+                case "--analyze" -> analyze = true;
+                case "--drop-redundant" -> analyze = dropRedundant = true;
+                case "--compact-lexer" -> compactLexer = true;
+                case "--case-insensitive" -> caseInsensitive = true;
+                case "--strict" -> strict = true;
+                case "--abilities", "--directory", "--table", "--threads", "--runs", "--max-pairs" -> {
+                    if (++i == args.length) {
+                        return arg + " needs a value";
+                    }
+                    String value = args[i];
+                    try {
+                        switch (arg) {
+                            case "--abilities" -> abilitiesPath = Path.of(value);
+                            case "--directory" -> directory = Path.of(value);
+                            case "--table" -> tablePath = Path.of(value);
+                            case "--threads" -> threads = Integer.parseInt(value);
+                            case "--runs" -> runs = Math.max(1, Integer.parseInt(value));
+                            default -> maxPairs = Long.parseLong(value);
+                        }
+                    } catch (NumberFormatException e) {
+                        return arg + " must be a whole number";
+                    }
+                }
+                default -> {
+                    return "Unknown option " + arg;
+                }
+            }
+        }
+
+        if (file == null) {
+            return "No collisions file was given";
+        }
+        if (!Files.isRegularFile(file)) {
+            return "The collisions file " + file + " does not exist";
+        }
+        Path folder = file.toAbsolutePath().getParent();
+        if (abilitiesPath == null) {
+            abilitiesPath = folder.resolve("abilities.txt");
+        }
+        if (!Files.isRegularFile(abilitiesPath)) {
+            return "The ability list " + abilitiesPath + " does not exist, write one on the server with /cu export";
+        }
+        if (directory == null) {
+            directory = folder.resolve("collisions");
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the files, then writes the table and the report.
+     *
+     * @return the exit code
+     */
+    private int run() throws IOException {
+        Allocations allocations = new Allocations();
+        Diagnostics diagnostics = new Diagnostics(report);
+        Logger quiet = Logger.getAnonymousLogger();
+        quiet.setUseParentHandlers(false);
+        quiet.setLevel(Level.OFF);
+
+        Run last = null;
+        for (int i = 0; i < runs; i++) {
+            // Diagnostics are the same every run, so only the first run reports them
+            last = compile(i == 0 ? diagnostics.logger() : quiet, allocations);
+        }
+        List<Diagnostic> problems = new ArrayList<>(last.diagnostics());
+        problems.sort(Diagnostic.POSITION_ORDER);
+        for (Diagnostic problem : problems) {
+            report.println(problem.message());
+        }
+
+        writeTable(last.symbols(), last.table());
+        report.println();
+        report.println("Stage                  Time    Allocated");
+        for (Map.Entry<String, Long> stage : last.metrics().getStageNanos().entrySet()) {
+            Long allocated = last.allocated().get(stage.getKey());
+            report.printf("%-18s %10s %12s%n", stage.getKey(), LoadMetrics.formatMillis(stage.getValue()),
+                    allocated == null ? "" : allocated < 0 ? "n/a" : formatBytes(allocated));
+        }
+        report.printf("%-18s %10s%n", "Total", LoadMetrics.formatMillis(last.metrics().getTotalNanos()));
+        if (runs > 1) {
+            report.println("Timings are of the last of " + runs + " runs");
+        }
+        report.println("Pair expansion allocations include group resolution and analysis");
+        if (threads != 1) {
+            report.println("Lex and parse allocations are not counted when parsing on more than one thread");
+        }
+        report.println();
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<String, Long> count : last.metrics().getCounts().entrySet()) {
+            if (!counts.isEmpty()) {
+                counts.append(", ");
+            }
+            counts.append(count.getKey()).append(": ").append(count.getValue());
+        }
+        report.println(counts);
+
+        int pairs = last.table().getRules().size();
+        boolean failed = false;
+        if (last.parseErrors() > 0) {
+            report.println("FAILED: " + last.parseErrors() + " lines or includes could not be parsed");
+            failed = true;
+        }
+        int reported = diagnostics.count() + problems.size();
+        if (strict && reported > 0) {
+            report.println("FAILED: " + reported + " diagnostics were reported");
+            failed = true;
+        }
+        if (maxPairs >= 0 && pairs > maxPairs) {
+            report.println("FAILED: " + pairs + " pairs is more than the maximum of " + maxPairs);
+            failed = true;
+        }
+        if (!failed) {
+            report.println("OK: " + pairs + " pairs, " + last.table().getRemovals().size() + " cancelled pairs");
+        }
+        return failed ? EXIT_FAILED : 0;
+    }
+
+    private Run compile(Logger logger, Allocations allocations) throws IOException {
+        LoadMetrics metrics = new LoadMetrics();
+        Map<String, Long> allocated = new LinkedHashMap<>();
+
+        long start = System.nanoTime();
+        long bytes = allocations.current();
+        AbilitySymbolTable symbols = AbilityList.read(abilitiesPath, caseInsensitive);
+        metrics.addStage("Ability list", System.nanoTime() - start);
+        allocated.put("Ability list", allocations.since(bytes));
+        metrics.setCount("Abilities", symbols.size());
+
+        start = System.nanoTime();
+        bytes = allocations.current();
+        RuleFileReader reader = new RuleFileReader(file.toFile(), directory.toFile(), compactLexer, logger);
+        RuleFileReader.Result parsed = reader.read(threads);
+        metrics.addStage("Lex and parse", System.nanoTime() - start);
+        allocated.put("Lex and parse", threads == 1 ? allocations.since(bytes) : -1);
+
+        bytes = allocations.current();
+        CollisionCompiler compiler = new CollisionCompiler(symbols);
+        if (analyze) {
+            compiler.enableAnalysis(dropRedundant);
+        }
+        CollisionTable table = compiler.compile(parsed.expressions());
+        // The compiler runs its stages back to back, so their allocations are counted together
+        long compileBytes = allocations.since(bytes);
+        metrics.addStage("Group resolution", compiler.getGroupResolutionNanos());
+        if (analyze) {
+            metrics.addStage("Analysis", compiler.getAnalysisNanos());
+            for (RuleFinding finding : compiler.getFindings()) {
+                logger.log(Level.INFO, finding.message());
+            }
+        }
+        metrics.addStage("Pair expansion", compiler.getExpansionNanos());
+        allocated.put("Pair expansion", compileBytes);
+
+        start = System.nanoTime();
+        bytes = allocations.current();
+        PairIndex index = PairIndex.of(table);
+        metrics.addStage("Pair index", System.nanoTime() - start);
+        allocated.put("Pair index", allocations.since(bytes));
+
+        metrics.setCount("Files", parsed.fileCount());
+        metrics.setCount("Tokens", parsed.tokenCount());
+        metrics.setCount("Expressions", parsed.expressionCount());
+        metrics.setCount("Parse errors", parsed.errorCount());
+        metrics.setCount("Groups", compiler.getGroupCount());
+        metrics.setCount("Expanded pairs", compiler.getExpandedPairs());
+        if (analyze) {
+            metrics.setCount("Findings", compiler.getFindings().size());
+            metrics.setCount("Dropped declarations", compiler.getDroppedDeclarations());
+        }
+        metrics.setCount("Rules", table.getRules().size());
+        metrics.setCount("Cancelled pairs", table.getRemovals().size());
+        metrics.setCount("Indexed pairs", index.size());
+        List<Diagnostic> diagnostics = new ArrayList<>(parsed.diagnostics());
+        diagnostics.addAll(compiler.getDiagnostics());
+        return new Run(symbols, table, metrics, allocated, parsed.errorCount(), diagnostics);
+    }
+
+    /**
+     * Writes one line per pair, sorted by name so that the output of two versions of the
+     * files can be diffed. Each line is written the way it would be declared.
+     */
+    private void writeTable(AbilitySymbolTable symbols, CollisionTable table) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (CollisionRule rule : table.getRules()) {
+            StringBuilder line = new StringBuilder();
+            line.append(name(symbols, rule.first())).append(' ').append(operator(rule.operator())).append(' ')
+                    .append(name(symbols, rule.second()));
+            if (rule.priority() != 0) {
+                line.append(" priority ").append(rule.priority());
+            }
+            if (rule.interval() != 1) {
+                line.append(" every ").append(rule.interval());
+            }
+            line.append(" # ");
+            if (rule.source() != null) {
+                line.append(rule.source()).append(':').append(rule.lineNumber());
+            } else {
+                line.append("line ").append(rule.lineNumber());
+            }
+            lines.add(line.toString());
+        }
+        for (long pair : table.getRemovals()) {
+            lines.add(name(symbols, CollisionTable.firstOf(pair)) + " x "
+                    + name(symbols, CollisionTable.secondOf(pair)));
+        }
+        lines.sort(Comparator.naturalOrder());
+
+        if (tablePath != null) {
+            Files.write(tablePath, lines, StandardCharsets.UTF_8);
+            report.println("Pair table written to " + tablePath);
+        } else {
+            for (String line : lines) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    private static String name(AbilitySymbolTable symbols, int id) {
+        String name = symbols.getName(id);
+        // Abilities that share a name can only be referred to by their alias
+        return symbols.resolve(name) == id ? name : symbols.getKey(id);
+    }
+
+    private static String operator(TokenType operator) {
+        return switch (operator) {
+            case GREATER_THAN -> ">";
+            case LESS_THAN -> "<";
+            case EQUAL -> "=";
+            case TILDE -> "~";
+            default -> "x";
+        };
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1fKB", bytes / 1024.0);
+        }
+        return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * The result of a single compile.
+     */
+    private record Run(AbilitySymbolTable symbols, CollisionTable table, LoadMetrics metrics,
+                       Map<String, Long> allocated, int parseErrors, List<Diagnostic> diagnostics) {}
+
+    /**
+     * Counts the bytes allocated by the current thread, where the JVM supports it.
+     */
+    private static class Allocations {
+
+        private final com.sun.management.ThreadMXBean threads;
+
+        private Allocations() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                threads = bean;
+            } else {
+                threads = null;
+            }
+        }
+
+        private long current() {
+            return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+        }
+
+        /**
+         * @return the bytes allocated since the count was taken, or -1 if allocations can't be counted
+         */
+        private long since(long start) {
+            return threads != null ? threads.getCurrentThreadAllocatedBytes() - start : -1;
+        }
+    }
+
+    /**
+     * Prints everything the stages log, such as files that can't be read, and counts
+     * the warnings.
+     */
+    private static class Diagnostics extends Handler {
+
+        private final PrintStream out;
+        private final Logger logger;
+        private int count;
+
+        private Diagnostics(PrintStream out) {
+            this.out = out;
+            logger = Logger.getAnonymousLogger();
+            logger.setUseParentHandlers(false);
+            logger.addHandler(this);
+        }
+
+        private Logger logger() {
+            return logger;
+        }
+
+        private int count() {
+            return count;
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                count++;
+                out.println("warning: " + record.getMessage().strip());
+            } else {
+                out.println("info: " + record.getMessage().strip());
+            }
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package me.kwilson272.collisionutility.offline;
+
+import me.kwilson272.collisionutility.LoadMetrics;
+import me.kwilson272.collisionutility.detection.CollisionDetector;
+import me.kwilson272.collisionutility.detection.ContactDetector;
+import me.kwilson272.collisionutility.detection.ContactList;
+import me.kwilson272.collisionutility.detection.InstanceSnapshot;
+import me.kwilson272.collisionutility.detection.RecordingReader;
+import me.kwilson272.collisionutility.detection.ReferenceDetector;
+import me.kwilson272.collisionutility.detection.RuleSet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Replays a recording written with {@code /cu record} through two collision detection
+ * engines, without a server. The {@link ReferenceDetector} checks every pair the way
+ * ProjectKorra's CollisionManager does, and is compared against the engine chosen with
+ * {@code --engine}, which is the {@link CollisionDetector} by default.
+ *<p>
+ * Every tick is detected by both engines, and the contacts are resolved the way the
+ * server would, with instances removed by a collision no longer colliding. The ticks
+ * where the two engines resolve different collisions are reported, and the cost of each
+ * engine per tick is written to standard out. Exits with 1 if any tick differs. Run it
+ * with {@code ./gradlew replayCollisions --args="..."}.
+ */
+public final class ReplayRunner {
+
+    private static final String USAGE = """
+            Usage: replayCollisions [options] <recording>
+              --engine <name>      spatial, reference, or the class name of a ContactDetector
+                                   with a constructor that takes no arguments (default: spatial)
+              --cell-size <n>      the width of a broadphase cell in blocks, for spatial (default: 8)
+              --threads <n>        threads to test on, 0 for one per core, for spatial (default: 1)
+              --warmup <n>         replays to run before the measured one (default: 1)
+              --mismatches <n>     the number of differing ticks to describe (default: 5)""";
+
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private final PrintStream report;
+    private Path file;
+    private String engine = "spatial";
+    private double cellSize = 8;
+    private int threads = 1;
+    private int warmup = 1;
+    private int maxMismatches = 5;
+    private ForkJoinPool pool;
+
+    private ReplayRunner(PrintStream report) {
+        this.report = report;
+    }
+
+    public static void main(String[] args) {
+        ReplayRunner runner = new ReplayRunner(System.out);
+        String error = runner.parseArguments(args);
+        if (error == null) {
+            error = runner.checkEngine();
+        }
+        if (error != null) {
+            System.err.println(error);
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        int exitCode;
+        try {
+            exitCode = runner.run();
+        } catch (IOException e) {
+            System.err.println("error: " + e.getMessage());
+            exitCode = EXIT_FAILED;
+        } finally {
+            runner.shutdown();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * @return a description of what is wrong with the arguments, or null if they are valid
+     */
+    private String parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (file != null) {
+                    return "Only one recording can be replayed at a time";
+                }
+                file = Path.of(arg);
+                continue;
+            }
+            switch (arg) {
+                case "--engine", "--cell-size", "--threads", "--warmup", "--mismatches" -> {
+                    if (++i == args.length) {
+                        return arg + " needs a value";
+                    }
+                    String value = args[i];
+                    try {
+                        switch (arg) {
+                            case "--engine" -> engine = value;
+                            case "--cell-size" -> cellSize = Double.parseDouble(value);
+                            case "--threads" -> threads = Integer.parseInt(value);
+                            case "--warmup" -> warmup = Math.max(0, Integer.parseInt(value));
+                            default -> maxMismatches = Math.max(0, Integer.parseInt(value));
+                        }
+                    } catch (NumberFormatException e) {
+                        return arg + " must be a number";
+                    }
+                }
+                default -> {
+                    return "Unknown option " + arg;
+                }
+            }
+        }
+
+        if (file == null) {
+            return "No recording was given";
+        }
+        if (!Files.isRegularFile(file)) {
+            return "The recording " + file + " does not exist, write one on the server with /cu record";
+        }
+        if (!(cellSize > 0)) {
+            return "--cell-size must be above 0";
+        }
+        return null;
+    }
+
+    /**
+     * @return a description of why the engine can't be created, or null if it can
+     */
+    private String checkEngine() {
+        try {
+            createEngine();
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return "The engine " + engine + " is not a ContactDetector with a constructor that takes no arguments";
+        }
+    }
+
+    /**
+     * Creates a new instance of the engine being compared, so that every replay starts
+     * counting rounds from the same place.
+     */
+    private ContactDetector createEngine() throws ReflectiveOperationException {
+        switch (engine) {
+            case "spatial" -> {
+                if (pool == null && threads != 1) {
+                    pool = new ForkJoinPool(threads > 1 ? threads : Runtime.getRuntime().availableProcessors());
+                }
+                return new CollisionDetector(cellSize, pool);
+            }
+            case "reference" -> {
+                return new ReferenceDetector();
+            }
+            default -> {
+                return (ContactDetector) Class.forName(engine).getDeclaredConstructor().newInstance();
+            }
+        }
+    }
+
+    private void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Replays the recording until the measured replay, then writes the report.
+     *
+     * @return the exit code
+     */
+    private int run() throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            replay(false);
+        }
+        Replay replay = replay(true);
+        if (replay.ticks == 0) {
+            report.println("The recording has no ticks");
+            return 0;
+        }
+
+        report.println();
+        report.printf("Replayed %d ticks, %d detected, %.1f instances on average, at most %d, %d rules%n",
+                replay.ticks, replay.detected, replay.instances / (double) Math.max(1, replay.detected),
+                replay.maxInstances, replay.maxRules);
+        report.println();
+        report.println("Engine              Total       Mean        p50        p99        Max   Contacts");
+        printEngine("reference", replay.referenceNanos, replay.referenceContacts);
+        printEngine(engine, replay.engineNanos, replay.engineContacts);
+        long referenceTotal = replay.referenceNanos.sum();
+        long engineTotal = replay.engineNanos.sum();
+        if (engineTotal > 0) {
+            report.printf("%s took %.2fx the time of the reference%n", engine, engineTotal / (double) referenceTotal);
+        }
+        report.println();
+
+        if (replay.mismatches > 0) {
+            report.println("FAILED: " + replay.mismatches + " of " + replay.detected
+                    + " detected ticks resolved different collisions");
+            return EXIT_FAILED;
+        }
+        report.println("OK: both engines resolved the same " + replay.resolved + " collisions");
+        return 0;
+    }
+
+    private void printEngine(String name, Nanos nanos, long contacts) {
+        long[] sorted = nanos.sorted();
+        String mean = sorted.length == 0 ? "" : LoadMetrics.formatMillis(nanos.sum() / sorted.length);
+        report.printf("%-14s %10s %10s %10s %10s %10s %10d%n", name, LoadMetrics.formatMillis(nanos.sum()), mean,
+                LoadMetrics.formatMillis(percentile(sorted, 50)), LoadMetrics.formatMillis(percentile(sorted, 99)),
+                LoadMetrics.formatMillis(percentile(sorted, 100)), contacts);
+    }
+
+    private Replay replay(boolean measured) throws IOException {
+        ContactDetector reference = new ReferenceDetector();
+        ContactDetector candidate;
+        try {
+            candidate = createEngine();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Replay replay = new Replay();
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        ContactList referenceContacts = new ContactList();
+        ContactList engineContacts = new ContactList();
+        Outcome expected = new Outcome();
+        Outcome actual = new Outcome();
+        try (RecordingReader reader = new RecordingReader(file)) {
+            double certainNoCollisionDistance = reader.getCertainNoCollisionDistance();
+            boolean removeMultipleInstances = reader.isRemoveMultipleInstances();
+            while (reader.next(snapshot)) {
+                replay.ticks++;
+                RuleSet rules = reader.getRules();
+                // The recorder leaves ticks empty when the server skipped detection
+                if (rules.size() == 0 || snapshot.size() == 0) {
+                    continue;
+                }
+
+                // Alternate which engine goes first, so neither always runs on a warm cache
+                long referenceNanos;
+                long engineNanos;
+                if ((replay.detected & 1) == 0) {
+                    referenceNanos = detect(reference, snapshot, rules, certainNoCollisionDistance, referenceContacts);
+                    engineNanos = detect(candidate, snapshot, rules, certainNoCollisionDistance, engineContacts);
+                } else {
+                    engineNanos = detect(candidate, snapshot, rules, certainNoCollisionDistance, engineContacts);
+                    referenceNanos = detect(reference, snapshot, rules, certainNoCollisionDistance, referenceContacts);
+                }
+                replay.detected++;
+                if (!measured) {
+                    continue;
+                }
+
+                replay.referenceNanos.add(referenceNanos);
+                replay.engineNanos.add(engineNanos);
+                replay.referenceContacts += referenceContacts.size();
+                replay.engineContacts += engineContacts.size();
+                replay.instances += snapshot.size();
+                replay.maxInstances = Math.max(replay.maxInstances, snapshot.size());
+                replay.maxRules = Math.max(replay.maxRules, rules.size());
+
+                expected.resolve(snapshot, rules, referenceContacts, removeMultipleInstances);
+                actual.resolve(snapshot, rules, engineContacts, removeMultipleInstances);
+                replay.resolved += expected.size;
+                if (!expected.sameAs(actual)) {
+                    if (replay.mismatches++ < maxMismatches) {
+                        describeMismatch(reader, replay.ticks, expected, actual);
+                    }
+                }
+            }
+        }
+        return replay;
+    }
+
+    private static long detect(ContactDetector detector, InstanceSnapshot snapshot, RuleSet rules,
+                               double certainNoCollisionDistance, ContactList contacts) {
+        long start = System.nanoTime();
+        detector.detect(snapshot, rules, certainNoCollisionDistance, contacts);
+        return System.nanoTime() - start;
+    }
+
+    private void describeMismatch(RecordingReader reader, int tick, Outcome expected, Outcome actual) {
+        int index = 0;
+        while (index < expected.size && index < actual.size && expected.matches(actual, index)) {
+            index++;
+        }
+        report.println("Tick " + tick + ": the reference resolved " + expected.size + " collisions and "
+                + engine + " resolved " + actual.size + ", the first difference is collision " + (index + 1));
+        report.println("  reference: " + describe(reader, expected, index));
+        report.println("  " + engine + ": " + describe(reader, actual, index));
+    }
+
+    private static String describe(RecordingReader reader, Outcome outcome, int index) {
+        if (index >= outcome.size) {
+            return "nothing";
+        }
+        RuleSet rules = reader.getRules();
+        int rule = outcome.rules[index];
+        return reader.getTypeName(rules.firstType(rule)) + " #" + outcome.firsts[index] + " with "
+                + reader.getTypeName(rules.secondType(rule)) + " #" + outcome.seconds[index] + " by rule " + rule;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) ((sorted.length - 1) * (long) percent / 100)];
+    }
+
+    /**
+     * What was counted during a single replay.
+     */
+    private static class Replay {
+
+        private final Nanos referenceNanos = new Nanos();
+        private final Nanos engineNanos = new Nanos();
+        private int ticks;
+        private int detected;
+        private int mismatches;
+        private long instances;
+        private int maxInstances;
+        private int maxRules;
+        private long referenceContacts;
+        private long engineContacts;
+        private long resolved;
+    }
+
+    /**
+     * A growable list of tick times.
+     */
+    private static class Nanos {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long sum() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        private long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * The collisions that would have been handled on a tick, in order, identified by the
+     * rule and the recorded keys of both instances.
+     */
+    private static class Outcome {
+
+        private int size;
+        private int[] rules = new int[64];
+        private long[] firsts = new long[64];
+        private long[] seconds = new long[64];
+        private boolean[] removed = new boolean[64];
+        private int[] collidedStamps = new int[64];
+
+        /**
+         * Resolves the contacts the way the CollisionEngine does. Collisions are assumed to
+         * remove the instances the rule removes, and nothing else.
+         */
+        private void resolve(InstanceSnapshot snapshot, RuleSet ruleSet, ContactList contacts,
+                             boolean removeMultipleInstances) {
+            size = 0;
+            if (removed.length < snapshot.size()) {
+                removed = new boolean[snapshot.size() * 2];
+                collidedStamps = new int[snapshot.size() * 2];
+            } else {
+                Arrays.fill(removed, 0, snapshot.size(), false);
+                Arrays.fill(collidedStamps, 0, snapshot.size(), 0);
+            }
+
+            for (int i = 0; i < contacts.size(); i++) {
+                int rule = contacts.rule(i);
+                int first = contacts.first(i);
+                int second = contacts.second(i);
+                if (removed[first] || removed[second]) {
+                    continue;
+                }
+                if (!removeMultipleInstances
+                        && (collidedStamps[first] == rule + 1 || collidedStamps[second] == rule + 1)) {
+                    continue;
+                }
+
+                add(rule, snapshot.key(first), snapshot.key(second));
+                removed[first] |= ruleSet.removeFirst(rule);
+                removed[second] |= ruleSet.removeSecond(rule);
+                if (!removeMultipleInstances) {
+                    collidedStamps[first] = rule + 1;
+                    collidedStamps[second] = rule + 1;
+                }
+            }
+        }
+
+        private void add(int rule, long first, long second) {
+            if (size == rules.length) {
+                rules = Arrays.copyOf(rules, size * 2);
+                firsts = Arrays.copyOf(firsts, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            rules[size] = rule;
+            firsts[size] = first;
+            seconds[size] = second;
+            size++;
+        }
+
+        private boolean matches(Outcome other, int index) {
+            return rules[index] == other.rules[index] && firsts[index] == other.firsts[index]
+                    && seconds[index] == other.seconds[index];
+        }
+
+        private boolean sameAs(Outcome other) {
+            if (size != other.size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (!matches(other, i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
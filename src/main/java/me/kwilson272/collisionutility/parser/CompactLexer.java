@@ -0,0 +1,292 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A lexer for very large collision files that produces the same tokens as the
+ * {@link Lexer}, while allocating as little as possible.
+ *<p>
+ * The file is read into a single buffer through NIO, characters are classified with
+ * a lookup table rather than a map, and tokens are written into a {@link TokenBuffer}.
+ * Each distinct literal is only turned into a String once.
+ *<p>
+ * The file is expected to be UTF-8. Only ASCII characters are treated as whitespace
+ * or special characters, everything else is read as part of a literal.
+ */
+public class CompactLexer {
+
+    private static final int LITERAL = -1;
+    private static final int WHITESPACE = -2;
+    private static final int LINE_BREAK = -3;
+    private static final int[] DISPATCH = new int[256];
+    private static final String[] SPECIAL_LITERALS = new String[TokenType.values().length];
+
+    static {
+        Arrays.fill(DISPATCH, LITERAL);
+        for (int c = 0; c < 128; c++) {
+            if (Character.isWhitespace(c)) {
+                DISPATCH[c] = WHITESPACE;
+            }
+        }
+        DISPATCH['\n'] = LINE_BREAK;
+        DISPATCH['\r'] = LINE_BREAK;
+        special('#', TokenType.POUND);
+        special('"', TokenType.QUOTE);
+        special('{', TokenType.OPEN_BRACE);
+        special('}', TokenType.CLOSE_BRACE);
+        special(',', TokenType.COMMA);
+        special('>', TokenType.GREATER_THAN);
+        special('<', TokenType.LESS_THAN);
+        special('=', TokenType.EQUAL);
+        special('x', TokenType.X);
+        special('~', TokenType.TILDE);
+        special('$', TokenType.DOLLAR_SIGN);
+        special('@', TokenType.AT_SIGN);
+    }
+
+    private static void special(char c, TokenType type) {
+        DISPATCH[c] = type.ordinal();
+        SPECIAL_LITERALS[type.ordinal()] = String.valueOf(c);
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final File source;
+    private final Logger logger;
+
+    private byte[] bytes;
+    private String[] literals;
+    private int[] literalOffsets;
+    private int[] literalLengths;
+    private int literalCount;
+    private int[] internSlots;
+
+    /**
+     * Creates a new CompactLexer object to tokenize the provided source file.
+     *
+     * @param source the File to be tokenized
+     * @param logger the Logger used when errors are encountered
+     */
+    public CompactLexer(File source, Logger logger) {
+        this.source = source;
+        this.logger = logger;
+    }
+
+    /**
+     * Converts the source file into a buffer of parsable tokens.
+     *
+     * @return a TokenBuffer ordered such that the first token read from the file is
+     * the first in the buffer. The buffer always ends with an EOF token.
+     */
+    public TokenBuffer readTokens() {
+        try {
+            bytes = readFile();
+        } catch (IOException e) {
+            String error = "An error occurred while attempting to read from the file '%s'%n";
+            logger.log(Level.WARNING, String.format(error, source.getAbsolutePath()));
+            TokenBuffer tokens = new TokenBuffer(1);
+            tokens.setLiterals(new String[] {""});
+            tokens.add(TokenType.EOF, 0, 0, 0, 0);
+            return tokens;
+        }
+
+        // Literal 0 is reserved for tokens without any text, and is followed by one literal
+        // per token type so that special characters can refer to theirs by ordinal
+        literals = new String[64];
+        literalOffsets = new int[64];
+        literalLengths = new int[64];
+        literalCount = 0;
+        internSlots = new int[128];
+        addLiteral("", -1, 0);
+        for (String literal : SPECIAL_LITERALS) {
+            addLiteral(literal == null ? "" : literal, -1, 0);
+        }
+
+        // Most tokens are a handful of characters plus their whitespace
+        TokenBuffer tokens = new TokenBuffer(bytes.length / 4);
+        int lineNumber = 0;
+        int position = 0;
+
+        // The Lexer starts on an empty line before the file, which produces a single EOL
+        tokens.add(TokenType.EOL, 0, 0, lineNumber, 0);
+        while (position < bytes.length) {
+            lineNumber++;
+            tokens.startLine(lineNumber, position);
+            position = readLine(tokens, position, lineNumber);
+        }
+        tokens.startLine(lineNumber + 1, position);
+        tokens.add(TokenType.EOF, position, 0, lineNumber + 1, 0);
+
+        tokens.setLiterals(Arrays.copyOf(literals, literalCount));
+        bytes = null;
+        return tokens;
+    }
+
+    private byte[] readFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be read");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full or the channel runs dry
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * Tokenizes a single line, ending it with an EOL token.
+     *
+     * @param tokens the TokenBuffer to add tokens to
+     * @param position the offset the line starts at
+     * @param lineNumber the number of the line
+     * @return the offset the next line starts at
+     */
+    private int readLine(TokenBuffer tokens, int position, int lineNumber) {
+        int cursor = position;
+        while (cursor < bytes.length) {
+            int dispatch = DISPATCH[bytes[cursor] & 0xFF];
+            if (dispatch == LINE_BREAK) {
+                break;
+            } else if (dispatch == WHITESPACE) {
+                cursor++;
+            } else if (dispatch == LITERAL) {
+                cursor = readLiteral(tokens, cursor, lineNumber);
+            } else {
+                tokens.add(TYPES[dispatch], cursor, 1, lineNumber, dispatch + 1);
+                cursor++;
+                if (dispatch == TokenType.POUND.ordinal()) {
+                    // A comment, ignore everything until the next line
+                    while (cursor < bytes.length && DISPATCH[bytes[cursor] & 0xFF] != LINE_BREAK) {
+                        cursor++;
+                    }
+                }
+            }
+        }
+        tokens.add(TokenType.EOL, cursor, 0, lineNumber, 0);
+
+        // Line breaks are \n, \r, or \r\n, just like BufferedReader#readLine
+        if (cursor < bytes.length) {
+            if (bytes[cursor] == '\r' && cursor + 1 < bytes.length && bytes[cursor + 1] == '\n') {
+                cursor++;
+            }
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Reads the literal starting at the cursor and adds it to the buffer.
+     *
+     * @return the offset just past the end of the literal
+     */
+    private int readLiteral(TokenBuffer tokens, int start, int lineNumber) {
+        int cursor = start;
+        while (cursor < bytes.length && DISPATCH[bytes[cursor] & 0xFF] == LITERAL) {
+            cursor++;
+        }
+        int length = cursor - start;
+        tokens.add(keywordType(start, length), start, length, lineNumber, intern(start, length));
+        return cursor;
+    }
+
+    private TokenType keywordType(int start, int length) {
+        if (isKeyword(start, length, "group")) {
+            return TokenType.KEY_GROUP;
+        } else if (isKeyword(start, length, "priority")) {
+            return TokenType.KEY_PRIORITY;
+        } else if (isKeyword(start, length, "every")) {
+            return TokenType.KEY_EVERY;
+        } else if (isKeyword(start, length, "include")) {
+            return TokenType.KEY_INCLUDE;
+        }
+        return TokenType.STRING_LIT;
+    }
+
+    private boolean isKeyword(int start, int length, String keyword) {
+        if (length != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((bytes[start + i] | 0x20) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the literal id for the bytes in the provided range, creating a String for
+     * the literal if it has not been seen before.
+     */
+    private int intern(int start, int length) {
+        int hash = 1;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        int mask = internSlots.length - 1;
+        int slot = hash & mask;
+        while (internSlots[slot] != 0) {
+            int id = internSlots[slot] - 1;
+            if (literalOffsets[id] >= 0 && literalLengths[id] == length
+                    && Arrays.equals(bytes, literalOffsets[id], literalOffsets[id] + length,
+                                     bytes, start, start + length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = addLiteral(new String(bytes, start, length, StandardCharsets.UTF_8), start, length);
+        internSlots[slot] = id + 1;
+        if (literalCount * 2 > internSlots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private int addLiteral(String literal, int offset, int length) {
+        if (literalCount == literals.length) {
+            int capacity = literalCount * 2;
+            literals = Arrays.copyOf(literals, capacity);
+            literalOffsets = Arrays.copyOf(literalOffsets, capacity);
+            literalLengths = Arrays.copyOf(literalLengths, capacity);
+        }
+        literals[literalCount] = literal;
+        literalOffsets[literalCount] = offset;
+        literalLengths[literalCount] = length;
+        return literalCount++;
+    }
+
+    private void rehash() {
+        int[] slots = new int[internSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < literalCount; id++) {
+            if (literalOffsets[id] < 0) {
+                continue;
+            }
+            int hash = 1;
+            for (int i = literalOffsets[id]; i < literalOffsets[id] + literalLengths[id]; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+        internSlots = slots;
+    }
+}
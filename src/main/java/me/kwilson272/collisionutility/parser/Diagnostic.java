@@ -0,0 +1,58 @@
+package me.kwilson272.collisionutility.parser;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A problem found in a collision file, kept as a plain value so that files with many
+ * problems can be read as quickly as files without any. Diagnostics are collected
+ * while reading and compiling, and reported together once loading is done.
+ *
+ * @param severity how the problem affects the file
+ * @param source the name of the file the problem was found in, or null if it is unknown
+ * @param lineNumber the line the problem was found on
+ * @param column the column of the line the problem starts at, starting from 1
+ * @param expected a description of what should have been there
+ * @param found a description of what was there instead
+ * @param suggestions names that were likely meant instead, closest first
+ */
+public record Diagnostic(Severity severity, String source, int lineNumber, int column, String expected,
+                         String found, List<String> suggestions) {
+
+    /**
+     * Orders diagnostics by file, then by where they are in the file.
+     */
+    public static final Comparator<Diagnostic> POSITION_ORDER = Comparator
+            .comparing(Diagnostic::source, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Diagnostic::lineNumber)
+            .thenComparingInt(Diagnostic::column);
+
+    public enum Severity {
+        /**
+         * The line or include could not be read, and was skipped.
+         */
+        ERROR,
+        /**
+         * The line was read, but part of it could not be resolved and was left out.
+         */
+        WARNING
+    }
+
+    /**
+     * @return the diagnostic as a single line, such as:
+     * {@code fire.txt:3:12: error: expected an operator, found "FireBlast"}
+     */
+    public String message() {
+        StringBuilder message = new StringBuilder();
+        if (source != null) {
+            message.append(source).append(':');
+        }
+        message.append(lineNumber).append(':').append(column).append(": ")
+                .append(severity == Severity.ERROR ? "error" : "warning")
+                .append(": expected ").append(expected).append(", found ").append(found);
+        if (!suggestions.isEmpty()) {
+            message.append(", did you mean ").append(String.join(" or ", suggestions)).append('?');
+        }
+        return message.toString();
+    }
+}
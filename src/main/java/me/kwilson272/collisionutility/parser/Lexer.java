@@ -23,9 +23,12 @@ public class Lexer {
     private final Logger logger;
     private final Map<Character, TokenType> specialChars;
 
+    private boolean opened;
+    private BufferedReader reader;
     private String line;
     private int cursor;
     private int lineNumber;
+    private boolean pendingEol;
 
     /**
      * Creates a new Lexer object to tokenize the provided source file.
@@ -49,6 +52,7 @@ public class Lexer {
         specialChars.put('x', TokenType.X);
         specialChars.put('~', TokenType.TILDE);
         specialChars.put('$', TokenType.DOLLAR_SIGN);
+        specialChars.put('@', TokenType.AT_SIGN);
 
         line = "";
         cursor = 0;
@@ -63,59 +67,129 @@ public class Lexer {
      */
     public List<Token> readTokens() {
         List<Token> tokens = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
-            while (true) {
-                Token token = nextToken();
-                tokens.add(token);
-                switch (token.type()) {
-                    case POUND: // A comment, we want to ignore until the next line
-                        // Additionally, we want to pass an EOL to ensure that incomplete lines
-                        // are caught, and additionally that we don't accidentally concatenate
-                        // two lines
-                        tokens.add(new Token(TokenType.EOL, "", lineNumber));
-                        // Fall through because the code should be the same
-                    case EOL:
-                        line = reader.readLine();
-                        cursor = 0;
-                        lineNumber++;
-                        break;
-                    case EOF:
-                        return tokens;
-                    default:
-                        break;
-                }
+        try (TokenSource stream = stream()) {
+            tokens.add(stream.token());
+            while (stream.type() != TokenType.EOF) {
+                stream.advance();
+                tokens.add(stream.token());
             }
-        } catch (IOException e) {
-            String error = "An error occurred while attempting to read from the file '%s'%n";
-            logger.log(Level.WARNING, String.format(error, source.getAbsolutePath()));
         }
         return tokens;
     }
 
+    /**
+     * Opens the source file so that tokens can be pulled from it one at a time, which
+     * only ever holds a single line of the file in memory. The returned source should
+     * be closed once it is no longer needed.
+     *<p>
+     * If the file can't be read, an error is logged and the source ends early with EOF.
+     * A Lexer can only be read once, either through this or {@link #readTokens()}.
+     *
+     * @return a TokenSource positioned on the first token of the file
+     * @throws IllegalStateException if the Lexer has already been read
+     */
+    public TokenSource stream() {
+        if (opened) {
+            throw new IllegalStateException("The lexer for " + source + " has already been read");
+        }
+        opened = true;
+        try {
+            reader = new BufferedReader(new FileReader(source));
+        } catch (IOException e) {
+            logReadError();
+            line = null;
+        }
+        Stream stream = new Stream();
+        stream.advance();
+        return stream;
+    }
+
+    /**
+     * Produces the next token of the file, reading the next line once the current one
+     * has been fully tokenized.
+     *
+     * @return the next Token
+     */
+    private Token next() {
+        if (pendingEol) {
+            // A comment, we want to ignore until the next line
+            // Additionally, we want to pass an EOL to ensure that incomplete lines
+            // are caught, and additionally that we don't accidentally concatenate
+            // two lines
+            pendingEol = false;
+            Token token = new Token(TokenType.EOL, "", lineNumber, line == null ? 1 : line.length() + 1);
+            readLine();
+            return token;
+        }
+
+        Token token = nextToken();
+        if (token.type() == TokenType.POUND) {
+            pendingEol = true;
+        } else if (token.type() == TokenType.EOL) {
+            readLine();
+        }
+        return token;
+    }
+
+    private void readLine() {
+        if (reader == null) {
+            line = null;
+            return;
+        }
+        try {
+            line = reader.readLine();
+        } catch (IOException e) {
+            logReadError();
+            line = null;
+        }
+        cursor = 0;
+        lineNumber++;
+    }
+
+    private void logReadError() {
+        String error = "An error occurred while attempting to read from the file '%s'%n";
+        logger.log(Level.WARNING, String.format(error, source.getAbsolutePath()));
+    }
+
     /**
      * Retrieves and constructs the next token from the input line.
      * @return a Token
      */
     private Token nextToken() {
         if (line == null) { // Should only be null when end of file is reached
-            return new Token(TokenType.EOF, "", lineNumber);
+            return new Token(TokenType.EOF, "", lineNumber, 1);
         }
 
         eatWhiteSpace();
         if (cursor == line.length()) { // empty line or no more remaining text
-            return new Token(TokenType.EOL, "", lineNumber);
+            return new Token(TokenType.EOL, "", lineNumber, cursor + 1);
         }
 
         char c = line.charAt(cursor);
         if (specialChars.containsKey(c)) {
             cursor++;
-            return new Token(specialChars.get(c), String.valueOf(c), lineNumber);
+            return new Token(specialChars.get(c), String.valueOf(c), lineNumber, cursor);
         }
 
+        int column = cursor + 1;
         String literal = nextString();
-        TokenType type = literal.equalsIgnoreCase("group") ? TokenType.KEY_GROUP :
-                                                   TokenType.STRING_LIT;
-        return new Token(type, literal, lineNumber);
+        return new Token(keywordType(literal), literal, lineNumber, column);
+    }
+
+    /**
+     * @return the type of the keyword the literal spells, or STRING_LIT if it is not a keyword
+     */
+    private static TokenType keywordType(String literal) {
+        if (literal.equalsIgnoreCase("group")) {
+            return TokenType.KEY_GROUP;
+        } else if (literal.equalsIgnoreCase("priority")) {
+            return TokenType.KEY_PRIORITY;
+        } else if (literal.equalsIgnoreCase("every")) {
+            return TokenType.KEY_EVERY;
+        } else if (literal.equalsIgnoreCase("include")) {
+            return TokenType.KEY_INCLUDE;
+        }
+        return TokenType.STRING_LIT;
     }
 
     /**
@@ -142,4 +216,57 @@ public class Lexer {
         }
         return line.substring(start, cursor);
     }
+
+    /**
+     * Pulls tokens from the lexer on demand, rather than reading the whole file up front.
+     */
+    private class Stream implements TokenSource {
+
+        private Token current;
+
+        @Override
+        public TokenType type() {
+            return current.type();
+        }
+
+        @Override
+        public String literal() {
+            return current.literal();
+        }
+
+        @Override
+        public int lineNumber() {
+            return current.lineNumber();
+        }
+
+        @Override
+        public int column() {
+            return current.column();
+        }
+
+        @Override
+        public Token token() {
+            return current;
+        }
+
+        @Override
+        public void advance() {
+            if (current == null || current.type() != TokenType.EOF) {
+                current = next();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (reader == null) {
+                return;
+            }
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // Nothing useful can be done if closing fails
+            }
+            reader = null;
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.Token;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.util.List;
+
+/**
+ * A TokenSource over a list of tokens that have already been read.
+ */
+public class ListTokenSource implements TokenSource {
+
+    private static final Token EOF = new Token(TokenType.EOF, "", 0, 1);
+
+    private final List<Token> tokens;
+    private int cursor;
+
+    /**
+     * @param tokens the List of tokens, which should end with an EOF token
+     */
+    public ListTokenSource(List<Token> tokens) {
+        this.tokens = tokens;
+        this.cursor = 0;
+    }
+
+    @Override
+    public TokenType type() {
+        return token().type();
+    }
+
+    @Override
+    public String literal() {
+        return token().literal();
+    }
+
+    @Override
+    public int lineNumber() {
+        return token().lineNumber();
+    }
+
+    @Override
+    public int column() {
+        return token().column();
+    }
+
+    @Override
+    public Token token() {
+        // Treat a list without a trailing EOF as if it had one
+        return cursor < tokens.size() ? tokens.get(cursor) : EOF;
+    }
+
+    @Override
+    public void advance() {
+        if (cursor < tokens.size() && tokens.get(cursor).type() != TokenType.EOF) {
+            ++cursor;
+        }
+    }
+}
@@ -4,62 +4,92 @@ import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
 import me.kwilson272.collisionutility.parser.grammar.EmptyExpression;
 import me.kwilson272.collisionutility.parser.grammar.Expression;
 import me.kwilson272.collisionutility.parser.grammar.GroupDeclaration;
+import me.kwilson272.collisionutility.parser.grammar.IncludeDeclaration;
 import me.kwilson272.collisionutility.parser.grammar.Operand;
 import me.kwilson272.collisionutility.parser.token.Token;
 import me.kwilson272.collisionutility.parser.token.TokenType;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Recursive descent parser to convert a list of tokens into a list of
  * expressions, with error checking.
+ *<p>
+ * Tokens are pulled from a {@link TokenSource}, so expressions can either be
+ * parsed all at once or one line at a time as they are needed. The parser counts
+ * the tokens, expressions, and errors it has seen along the way.
+ *<p>
+ * Errors are not thrown. When a production finds a token it doesn't expect, it records
+ * a {@link Diagnostic} and returns null, and the rest of the line is skipped. The
+ * diagnostics can be read back once parsing is done, so a file with thousands of bad
+ * lines is parsed about as quickly as a clean one.
  */
 public class Parser {
 
-    private final List<Token> tokens;
-    private final Logger logger;
+    private static final List<String> KEYWORDS = List.of("group", "include");
+    private static final List<String> MODIFIERS = List.of("priority", "every");
 
-    private int cursor;
+    private final TokenSource tokens;
+    private final String sourceName;
+    private final List<Diagnostic> diagnostics;
+
+    private int tokenCount;
+    private int expressionCount;
+    private int errorCount;
 
     /**
      * Creates a new parser to create expressions out of tokens
      *
      * @param tokens the List of tokens to be parsed
-     * @param logger the logger used when errors are encountered
      */
-    public Parser(List<Token> tokens, Logger logger) {
-        this.tokens = tokens;
-        this.logger = logger;
-        this.cursor = 0;
+    public Parser(List<Token> tokens) {
+        this(new ListTokenSource(tokens), null);
     }
 
-    private Token peek() {
-        return tokens.get(cursor);
+    /**
+     * Creates a new parser that pulls tokens from the source as it needs them
+     *
+     * @param tokens the TokenSource to be parsed
+     */
+    public Parser(TokenSource tokens) {
+        this(tokens, null);
     }
 
-    private void advance() {
-        if (cursor < tokens.size() - 1) {
-            ++cursor;
-        }
+    /**
+     * Creates a new parser that pulls tokens from the source as it needs them, and names
+     * the file the tokens came from in its diagnostics
+     *
+     * @param tokens the TokenSource to be parsed
+     * @param sourceName the name of the file being parsed, or null to leave it out
+     */
+    public Parser(TokenSource tokens, String sourceName) {
+        this.tokens = tokens;
+        this.sourceName = sourceName;
+        diagnostics = new ArrayList<>();
     }
 
-    private Token previous() {
-        return tokens.get(cursor-1);
+    private void advance() {
+        tokens.advance();
+        tokenCount++;
     }
 
     private boolean check(TokenType tokenType) {
-        return peek().type() == tokenType;
+        return tokens.type() == tokenType;
     }
 
-    private void consume(TokenType type, String errorMessage) throws ParseError {
+    /**
+     * Consumes the current token if it has the expected type, otherwise records an error.
+     *
+     * @return true if the token was consumed
+     */
+    private boolean consume(TokenType type, String expected) {
         if (check(type)) {
             advance();
-            return;
+            return true;
         }
-        throw new ParseError(errorMessage, peek());
+        error(expected, List.of());
+        return false;
     }
 
     private boolean match(TokenType... tokenTypes) {
@@ -72,102 +102,316 @@ public class Parser {
         return false;
     }
 
+    /**
+     * Records an error at the current token.
+     */
+    private void error(String expected, List<String> suggestions) {
+        diagnostics.add(new Diagnostic(Diagnostic.Severity.ERROR, sourceName, tokens.lineNumber(), tokens.column(),
+                expected, describe(tokens.type(), tokens.literal()), suggestions));
+    }
+
+    /**
+     * Records an error at a token that was already consumed.
+     */
+    private void error(int lineNumber, int column, String expected, String literal) {
+        diagnostics.add(new Diagnostic(Diagnostic.Severity.ERROR, sourceName, lineNumber, column,
+                expected, describe(TokenType.STRING_LIT, literal), List.of()));
+    }
+
+    private static String describe(TokenType type, String literal) {
+        return switch (type) {
+            case EOL -> "the end of the line";
+            case EOF -> "the end of the file";
+            case STRING_LIT -> "\"" + literal + "\"";
+            case KEY_GROUP, KEY_PRIORITY, KEY_EVERY, KEY_INCLUDE -> "the keyword '" + literal + "'";
+            default -> "'" + literal + "'";
+        };
+    }
+
     /**
      * @return all valid expressions derived from the token list.
      */
     public List<Expression> parseExpressions() {
         List<Expression> expressions = new ArrayList<>();
+        Expression expression;
+        while ((expression = nextExpression()) != null) {
+            expressions.add(expression);
+        }
+        return expressions;
+    }
+
+    /**
+     * Parses the next valid expression, skipping over any invalid lines.
+     *
+     * @return the next Expression, or null once the end of file is reached
+     */
+    public Expression nextExpression() {
         while (!check(TokenType.EOF)) {
-            try {
-                expressions.add(line());
-            } catch (ParseError e) {
-                logger.log(Level.WARNING, e.getMessage());
-                // Given this language works on a line by line basis, it is expected
-                // that one bad line shouldn't ruin every other line. Thus, we will
-                // try and discard the current line to 'reset' the parser
-
-                // if the EOL/EOF is the invalid token, we don't have to worry about
-                // consuming a non-offending line
-                while (!check(TokenType.EOF) && !check(TokenType.EOL)) {
-                    advance();
+            Expression expression = line();
+            if (expression != null) {
+                if (!(expression instanceof EmptyExpression)) {
+                    expressionCount++;
                 }
+                return expression;
+            }
+            errorCount++;
+            // Given this language works on a line by line basis, it is expected
+            // that one bad line shouldn't ruin every other line. Thus, we will
+            // try and discard the current line to 'reset' the parser
+
+            // if the EOL/EOF is the invalid token, we don't have to worry about
+            // consuming a non-offending line
+            while (!check(TokenType.EOF) && !check(TokenType.EOL)) {
+                advance();
             }
         }
-        return expressions;
+        return null;
+    }
+
+    /**
+     * @return the number of tokens consumed so far
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return the number of collision and group declarations parsed so far
+     */
+    public int getExpressionCount() {
+        return expressionCount;
+    }
+
+    /**
+     * @return the number of lines that could not be parsed so far
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return a diagnostic for every line that could not be parsed so far, in line order
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
     }
 
-    private Expression line() throws ParseError {
+    private Expression line() {
         if (match(TokenType.EOL, TokenType.POUND)) {
             return new EmptyExpression();
         } else if (check(TokenType.EOF)) {
             // Do not advance so we can allow our while loop to terminate
             return new EmptyExpression();
-        } else {
-            Expression expr = expression();
-            if (!match(TokenType.EOL, TokenType.EOF, TokenType.POUND)) {
-                throw new ParseError("Expected a new line, end of file, or comment " +
-                        "marker at the end of a complete expression", peek());
-            }
-            return expr;
         }
+
+        Expression expr = expression();
+        if (expr == null) {
+            return null;
+        }
+        if (!match(TokenType.EOL, TokenType.EOF, TokenType.POUND)) {
+            List<String> suggestions = expr instanceof CollisionDeclaration && check(TokenType.STRING_LIT)
+                    ? Suggestions.closest(tokens.literal(), MODIFIERS) : List.of();
+            error("a new line, end of file, or comment marker at the end of a complete expression", suggestions);
+            return null;
+        }
+        return expr;
     }
 
-    private Expression expression() throws ParseError {
-        TokenType current = peek().type();
-        if (current == TokenType.STRING_LIT || current == TokenType.DOLLAR_SIGN) {
+    private Expression expression() {
+        TokenType current = tokens.type();
+        if (current == TokenType.STRING_LIT || current == TokenType.DOLLAR_SIGN || current == TokenType.AT_SIGN) {
             return collisionDeclaration();
         } else if (current == TokenType.KEY_GROUP) {
             return groupDeclaration();
-        } else {
-            throw new ParseError("Expected a collision declaration or group declaration", peek());
+        } else if (current == TokenType.KEY_INCLUDE) {
+            return includeDeclaration();
         }
+        error("a collision declaration, group declaration, or include", List.of());
+        return null;
     }
 
-    private GroupDeclaration groupDeclaration() throws ParseError {
-        consume(TokenType.KEY_GROUP, "Group declarations must start with the keyword 'group'");
-        consume(TokenType.QUOTE, "Group names must be specified in quotations, missing openning '\"'");
-        String groupName = stringLiteral();
-        consume(TokenType.QUOTE, "Group names must be specified in quotations, missing closing '\"'");
-        consume(TokenType.OPEN_BRACE, "Group contents must be declared in braces, missing '{'");
+    private GroupDeclaration groupDeclaration() {
+        advance();
+        if (!consume(TokenType.QUOTE, "'\"' before the name of the group")) {
+            return null;
+        }
+        int lineNumber = tokens.lineNumber();
+        int column = tokens.column();
+        String groupName = stringLiteral("the name of the group");
+        if (groupName == null || !consume(TokenType.QUOTE, "'\"' after the name of the group")
+                || !consume(TokenType.OPEN_BRACE, "'{' before the contents of the group")) {
+            return null;
+        }
         List<Operand> groupContents = operandList();
-        consume(TokenType.CLOSE_BRACE, "Group contents must be declared in braces, missing '}'");
-        return new GroupDeclaration(groupName, groupContents);
+        if (groupContents == null || !consume(TokenType.CLOSE_BRACE, "'}' after the contents of the group")) {
+            return null;
+        }
+        return new GroupDeclaration(groupName, groupContents, lineNumber, column, sourceName);
     }
 
-    String stringLiteral() throws ParseError {
-        consume(TokenType.STRING_LIT, "Expected a String literal.");
-        return previous().literal();
+    private IncludeDeclaration includeDeclaration() {
+        int lineNumber = tokens.lineNumber();
+        int column = tokens.column();
+        advance();
+        if (!consume(TokenType.QUOTE, "'\"' before the name of the included file")) {
+            return null;
+        }
+        String path = path();
+        if (path == null || !consume(TokenType.QUOTE, "'\"' after the name of the included file")) {
+            return null;
+        }
+        return new IncludeDeclaration(path, lineNumber, column);
+    }
+
+    private String path() {
+        // A lowercase x is lexed as an operator, so a file name like "extra.txt" is split
+        // into several tokens that have to be joined back together
+        StringBuilder path = new StringBuilder();
+        while (check(TokenType.STRING_LIT) || check(TokenType.X)) {
+            path.append(tokens.literal());
+            advance();
+        }
+        if (path.isEmpty()) {
+            error("the name of a file, such as: include \"fire.txt\"", List.of());
+            return null;
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return the literal, or null if the current token is not a String literal
+     */
+    private String stringLiteral(String expected) {
+        if (!check(TokenType.STRING_LIT)) {
+            error(expected, List.of());
+            return null;
+        }
+        String literal = tokens.literal();
+        advance();
+        return literal;
     }
 
-    List<Operand> operandList() throws ParseError {
+    private List<Operand> operandList() {
         List<Operand> operands = new ArrayList<>();
         if (check(TokenType.CLOSE_BRACE)) {
             return operands;
         }
         do {
-            operands.add(operand());
+            Operand operand = operand();
+            if (operand == null) {
+                return null;
+            }
+            operands.add(operand);
         } while (match(TokenType.COMMA));
         return operands;
     }
 
-    private Operand operand() throws ParseError {
-        if (check(TokenType.DOLLAR_SIGN)) {
-            advance();
-            return new Operand(true, stringLiteral(), peek().lineNumber());
+    private Operand operand() {
+        int lineNumber = tokens.lineNumber();
+        int column = tokens.column();
+        boolean isGroupReference = match(TokenType.DOLLAR_SIGN);
+        boolean isSelector = !isGroupReference && match(TokenType.AT_SIGN);
+        String literal = stringLiteral(isGroupReference ? "the name of a group"
+                : isSelector ? "an element or ability type, such as: @Fire"
+                : "an ability name, group reference, or selector");
+        if (literal == null) {
+            return null;
+        }
+        return new Operand(isGroupReference, isSelector, literal, lineNumber, column, sourceName);
+    }
+
+    private CollisionDeclaration collisionDeclaration() {
+        Operand leftOperand = operand();
+        if (leftOperand == null) {
+            return null;
+        }
+        Token operator = operator(leftOperand);
+        if (operator == null) {
+            return null;
+        }
+        Operand rightOperand = operand();
+        if (rightOperand == null) {
+            return null;
+        }
+
+        int priority = 0;
+        int interval = 1;
+        boolean hasPriority = false;
+        boolean hasInterval = false;
+        while (check(TokenType.KEY_PRIORITY) || check(TokenType.KEY_EVERY)) {
+            if (check(TokenType.KEY_PRIORITY)) {
+                if (hasPriority) {
+                    error("a single priority per collision declaration", List.of());
+                    return null;
+                }
+                advance();
+                Integer value = integer("a whole number for the priority, such as: priority 5", false);
+                if (value == null) {
+                    return null;
+                }
+                priority = value;
+                hasPriority = true;
+            } else {
+                if (hasInterval) {
+                    error("a single interval per collision declaration", List.of());
+                    return null;
+                }
+                advance();
+                Integer value = integer("a whole number of at least 1 tick for the interval, such as: every 5", true);
+                if (value == null) {
+                    return null;
+                }
+                interval = value;
+                hasInterval = true;
+            }
         }
-        return new Operand(false, stringLiteral(), peek().lineNumber());
+        return new CollisionDeclaration(leftOperand, operator, rightOperand, priority, interval);
     }
 
-    private CollisionDeclaration collisionDeclaration() throws ParseError {
-        return new CollisionDeclaration(operand(), operator(), operand());
+    /**
+     * Parses a whole number without going through {@link Integer#parseInt(String)}, which
+     * would throw on bad input.
+     *
+     * @param positive true if the number must be at least 1
+     * @return the number, or null if the current token is not a valid number
+     */
+    private Integer integer(String expected, boolean positive) {
+        int lineNumber = tokens.lineNumber();
+        int column = tokens.column();
+        String literal = stringLiteral(expected);
+        if (literal == null) {
+            return null;
+        }
+
+        boolean negative = literal.startsWith("-");
+        int start = negative || literal.startsWith("+") ? 1 : 0;
+        long value = 0;
+        boolean valid = start < literal.length() && literal.length() - start <= 10;
+        for (int i = start; valid && i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            valid = c >= '0' && c <= '9';
+            value = value * 10 + (c - '0');
+        }
+        value = negative ? -value : value;
+        if (!valid || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE || (positive && value < 1)) {
+            error(lineNumber, column, expected, literal);
+            return null;
+        }
+        return (int) value;
     }
 
-    private Token operator() throws ParseError {
-        if (match(TokenType.GREATER_THAN, TokenType.LESS_THAN,
-                TokenType.EQUAL, TokenType.TILDE, TokenType.X)) {
-           return previous();
+    private Token operator(Operand leftOperand) {
+        if (check(TokenType.GREATER_THAN) || check(TokenType.LESS_THAN) || check(TokenType.EQUAL)
+                || check(TokenType.TILDE) || check(TokenType.X)) {
+            Token operator = tokens.token();
+            advance();
+            return operator;
         }
-        throw new ParseError("An operator is required in collision declarations." +
-                " Use: >, <, =, ~, or X. See the github documentation for details", peek());
+        // A misspelled keyword is read as an ability name, which is followed by a quote
+        boolean isName = !leftOperand.isGroupReference() && !leftOperand.isSelector();
+        List<String> suggestions = isName && check(TokenType.QUOTE)
+                ? Suggestions.closest(leftOperand.literal(), KEYWORDS) : List.of();
+        error("an operator: >, <, =, ~, or x", suggestions);
+        return null;
     }
 }
@@ -0,0 +1,274 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.grammar.EmptyExpression;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+import me.kwilson272.collisionutility.parser.grammar.IncludeDeclaration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Reads the collisions file together with every file in the collisions directory, and
+ * merges their expressions into a single list.
+ *<p>
+ * Each file is lexed and parsed on its own, so the files are spread over a pool of
+ * worker threads and load time scales with the number of cores rather than the total
+ * size of the files. Once every file is parsed, the expressions are merged in an order
+ * that doesn't depend on which file finished first. The collisions file comes first,
+ * and each include is replaced by the expressions of the included file. Files in the
+ * directory that are not included anywhere follow, sorted by their path. A file is only
+ * merged once, at the first place it is included.
+ *<p>
+ * Tokens are streamed unless the CompactLexer is used, but the expressions of every
+ * file are held until the merge, since an include can't be resolved before the included
+ * file is parsed. The compiler holds every declaration until all groups are known anyway.
+ *<p>
+ * Only {@code .txt} files are read. Included paths are relative to the collisions
+ * directory, and must not leave it.
+ *<p>
+ * Problems are not logged as they are found. The diagnostics of every file are returned
+ * with the result, so that they can be reported together.
+ */
+public class RuleFileReader {
+
+    private static final String EXTENSION = ".txt";
+
+    private final Path file;
+    private final Path directory;
+    private final boolean compactLexer;
+    private final Logger logger;
+
+    private List<Path> files;
+
+    /**
+     * @param file the collisions file, which is always read first
+     * @param directory the collisions directory, which does not have to exist
+     * @param compactLexer true if files should be read with the {@link CompactLexer}
+     * @param logger the Logger used when files can't be read
+     */
+    public RuleFileReader(File file, File directory, boolean compactLexer, Logger logger) {
+        this.file = file.toPath().toAbsolutePath().normalize();
+        this.directory = directory.toPath().toAbsolutePath().normalize();
+        this.compactLexer = compactLexer;
+        this.logger = logger;
+    }
+
+    /**
+     * Lists the files that make up the collisions, which are the collisions file followed
+     * by every file in the collisions directory sorted by path. The directory is only
+     * listed the first time this is called.
+     *
+     * @return the files, in the order they are merged in when none of them are included
+     */
+    public List<Path> getFiles() {
+        if (files != null) {
+            return files;
+        }
+        List<Path> found = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                walk.filter(path -> path.toString().endsWith(EXTENSION) && !path.equals(file)
+                        && Files.isRegularFile(path)).forEach(found::add);
+            } catch (IOException | UncheckedIOException e) {
+                logger.log(Level.WARNING, "Could not list the files in " + directory, e);
+            }
+        }
+        found.sort(Comparator.comparing(this::relativePath));
+        found.add(0, file);
+        files = List.copyOf(found);
+        return files;
+    }
+
+    /**
+     * Lexes and parses every file, then merges their expressions.
+     *
+     * @param threads the number of threads to parse with, 0 for one per core
+     * @return the merged expressions and what was counted while parsing them
+     */
+    public Result read(int threads) {
+        List<Path> roots = getFiles();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        threads = Math.min(threads, roots.size());
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            Map<Path, CompletableFuture<ParsedFile>> parsed = new HashMap<>();
+            for (Path path : roots) {
+                parsed.put(path, pool != null ? CompletableFuture.supplyAsync(() -> parse(path), pool)
+                        : CompletableFuture.completedFuture(parse(path)));
+            }
+            return merge(roots, parsed);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private ParsedFile parse(Path path) {
+        String name = displayName(path);
+        Parser parser;
+        List<Expression> expressions;
+        if (compactLexer) {
+            parser = new Parser(new CompactLexer(path.toFile(), logger).readTokens().cursor(), name);
+            expressions = parser.parseExpressions();
+        } else {
+            try (TokenSource tokens = new Lexer(path.toFile(), logger).stream()) {
+                parser = new Parser(tokens, name);
+                expressions = parser.parseExpressions();
+            }
+        }
+        return new ParsedFile(expressions, parser.getTokenCount(), parser.getExpressionCount(),
+                parser.getErrorCount(), parser.getDiagnostics());
+    }
+
+    private Result merge(List<Path> roots, Map<Path, CompletableFuture<ParsedFile>> parsed) {
+        Merge merge = new Merge(parsed);
+        Set<Path> included = new HashSet<>();
+        for (Path path : roots) {
+            for (Expression expression : parsed.get(path).join().expressions()) {
+                if (expression instanceof IncludeDeclaration include) {
+                    Path target = resolve(include);
+                    if (target != null) {
+                        included.add(target);
+                    }
+                }
+            }
+        }
+
+        for (Path path : roots) {
+            if (path.equals(file) || !included.contains(path)) {
+                merge.file(path);
+            }
+        }
+        // Files that are only included by each other are never reached from a root
+        for (Path path : roots) {
+            if (!merge.merged.contains(path)) {
+                merge.file(path);
+            }
+        }
+        return new Result(merge.expressions, roots.size(), merge.tokenCount, merge.expressionCount,
+                merge.errorCount, merge.diagnostics);
+    }
+
+    /**
+     * @return the included file, or null if the path does not point into the collisions directory
+     */
+    private Path resolve(IncludeDeclaration include) {
+        try {
+            Path target = directory.resolve(include.path()).normalize();
+            return target.startsWith(directory) && target.toString().endsWith(EXTENSION) ? target : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private String relativePath(Path path) {
+        return directory.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private String displayName(Path path) {
+        Path root = file.getParent();
+        Path name = root != null && path.startsWith(root) ? root.relativize(path) : path;
+        return name.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * The expressions of a file and what was counted while parsing it.
+     */
+    private record ParsedFile(List<Expression> expressions, int tokenCount, int expressionCount,
+                              int errorCount, List<Diagnostic> diagnostics) {}
+
+    /**
+     * Walks the parsed files depth first, replacing includes with the expressions of the
+     * included files.
+     */
+    private class Merge {
+
+        private final Map<Path, CompletableFuture<ParsedFile>> parsed;
+        private final Set<Path> merged;
+        private final List<Path> including;
+        private final List<Expression> expressions;
+        private final List<Diagnostic> diagnostics;
+        private int tokenCount;
+        private int expressionCount;
+        private int errorCount;
+
+        private Merge(Map<Path, CompletableFuture<ParsedFile>> parsed) {
+            this.parsed = parsed;
+            merged = new HashSet<>();
+            including = new ArrayList<>();
+            expressions = new ArrayList<>();
+            diagnostics = new ArrayList<>();
+        }
+
+        private void file(Path path) {
+            merged.add(path);
+            including.add(path);
+            ParsedFile parsedFile = parsed.get(path).join();
+            tokenCount += parsedFile.tokenCount();
+            expressionCount += parsedFile.expressionCount();
+            errorCount += parsedFile.errorCount();
+            diagnostics.addAll(parsedFile.diagnostics());
+            for (Expression expression : parsedFile.expressions()) {
+                if (expression instanceof IncludeDeclaration include) {
+                    include(path, include);
+                } else if (!(expression instanceof EmptyExpression)) {
+                    expressions.add(expression);
+                }
+            }
+            including.remove(including.size() - 1);
+        }
+
+        private void include(Path from, IncludeDeclaration include) {
+            Path target = resolve(include);
+            if (target == null || !parsed.containsKey(target)) {
+                errorCount++;
+                diagnostics.add(new Diagnostic(Diagnostic.Severity.ERROR, displayName(from), include.lineNumber(),
+                        include.column(), "a " + EXTENSION + " file in the collisions directory",
+                        "\"" + include.path() + "\"", List.of()));
+                return;
+            }
+            if (including.contains(target)) {
+                diagnostics.add(new Diagnostic(Diagnostic.Severity.WARNING, displayName(from), include.lineNumber(),
+                        include.column(), "a file that isn't already being included, the include will be ignored",
+                        "\"" + include.path() + "\"", List.of()));
+                return;
+            }
+            if (!merged.contains(target)) {
+                file(target);
+            }
+        }
+    }
+
+    /**
+     * The merged expressions of every file.
+     *
+     * @param expressions the expressions of every file, in the order they apply
+     * @param fileCount the number of files read
+     * @param tokenCount the number of tokens read across every file
+     * @param expressionCount the number of collision and group declarations and includes parsed
+     * @param errorCount the number of lines that could not be parsed, and includes that
+     *                   could not be resolved
+     * @param diagnostics the problems found in every file, in the order the files were merged
+     */
+    public record Result(List<Expression> expressions, int fileCount, int tokenCount, int expressionCount,
+                         int errorCount, List<Diagnostic> diagnostics) {}
+}
@@ -0,0 +1,92 @@
+package me.kwilson272.collisionutility.parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the names that a misspelled name was most likely meant to be, by the number of
+ * single character edits between them. Swapping two neighbouring characters counts as a
+ * single edit.
+ */
+public final class Suggestions {
+
+    private static final int MAX_SUGGESTIONS = 3;
+
+    private Suggestions() {
+    }
+
+    /**
+     * Finds the closest candidates to a name, ignoring case. A candidate is only close
+     * enough if about a third of the name or less has to change. Candidates that only
+     * differ by case are suggested once, as they were first given.
+     *
+     * @param name the name that could not be found
+     * @param candidates the names that could have been meant
+     * @return up to three of the closest candidates, closest first
+     */
+    public static List<String> closest(String name, Iterable<String> candidates) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        int limit = Math.max(1, lowerName.length() / 3);
+        List<Match> matches = new ArrayList<>();
+        Set<String> matched = new HashSet<>();
+        int[][] rows = new int[3][lowerName.length() + 1];
+        for (String candidate : candidates) {
+            String lowerCandidate = candidate.toLowerCase(Locale.ROOT);
+            if (Math.abs(lowerCandidate.length() - lowerName.length()) > limit || lowerCandidate.equals(lowerName)) {
+                continue;
+            }
+            int distance = distance(lowerName, lowerCandidate, limit, rows);
+            if (distance <= limit && matched.add(lowerCandidate)) {
+                matches.add(new Match(candidate, distance));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::name));
+        List<String> closest = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < MAX_SUGGESTIONS; i++) {
+            closest.add(matches.get(i).name());
+        }
+        return closest;
+    }
+
+    /**
+     * The optimal string alignment distance between two names, which stops early once
+     * every path is further than the limit.
+     *
+     * @param rows three rows of at least {@code a.length() + 1}, reused between calls
+     * @return the distance, or something above the limit if it is further
+     */
+    private static int distance(String a, String b, int limit, int[][] rows) {
+        int[] beforePrevious = rows[0];
+        int[] previous = rows[1];
+        int[] current = rows[2];
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            int rowMinimum = j;
+            for (int i = 1; i <= a.length(); i++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[i] = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[i] = Math.min(current[i], beforePrevious[i - 2] + 1);
+                }
+                rowMinimum = Math.min(rowMinimum, current[i]);
+            }
+            if (rowMinimum > limit) {
+                return rowMinimum;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[a.length()];
+    }
+
+    private record Match(String name, int distance) {}
+}
@@ -0,0 +1,182 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.Token;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * A compact, array-backed list of tokens produced by the {@link CompactLexer}.
+ *<p>
+ * Rather than one Token object per token, each field is stored in its own primitive
+ * array, and literals are stored once in a shared table and referenced by index.
+ * The Parser can walk the buffer through {@link #cursor()} without any of the tokens
+ * being turned into objects.
+ */
+public class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private byte[] types;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] lines;
+    private int[] literalIds;
+    private String[] literals;
+    private int[] lineStarts;
+    private int size;
+
+    /**
+     * @param capacity the number of tokens to allocate room for up front
+     */
+    TokenBuffer(int capacity) {
+        capacity = Math.max(capacity, 16);
+        types = new byte[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        literalIds = new int[capacity];
+        literals = new String[0];
+        lineStarts = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Appends a token to the buffer.
+     *
+     * @param type the TokenType of the token
+     * @param offset the byte offset of the token in the source file
+     * @param length the length of the token in bytes
+     * @param line the line number the token was derived from
+     * @param literalId the index of the token's literal in the literal table
+     */
+    void add(TokenType type, int offset, int length, int line, int literalId) {
+        if (size == types.length) {
+            int capacity = size + (size >> 1);
+            types = Arrays.copyOf(types, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            literalIds = Arrays.copyOf(literalIds, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        literalIds[size] = literalId;
+        size++;
+    }
+
+    /**
+     * Records where a line starts, so that the columns of its tokens can be worked out
+     * from their offsets.
+     *
+     * @param line the line number
+     * @param offset the byte offset the line starts at
+     */
+    void startLine(int line, int offset) {
+        if (line >= lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(line + 1, lineStarts.length * 2));
+        }
+        lineStarts[line] = offset;
+    }
+
+    /**
+     * @param literals the table of interned literals the tokens refer to
+     */
+    void setLiterals(String[] literals) {
+        this.literals = literals;
+    }
+
+    /**
+     * @return the number of tokens in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int lineNumber(int index) {
+        return lines[index];
+    }
+
+    /**
+     * @return the column the token starts at, starting from 1 and counted in bytes
+     */
+    public int column(int index) {
+        return offsets[index] - lineStarts[lines[index]] + 1;
+    }
+
+    public String literal(int index) {
+        return literals[literalIds[index]];
+    }
+
+    /**
+     * Creates a Token object for a single token, for when one is actually needed.
+     *
+     * @param index the index of the token
+     * @return a new Token
+     */
+    public Token token(int index) {
+        return new Token(type(index), literal(index), lineNumber(index), column(index));
+    }
+
+    /**
+     * @return a TokenSource positioned on the first token of the buffer
+     */
+    public TokenSource cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the buffer by index. The buffer always ends with an EOF token, which the
+     * cursor stays on once it is reached.
+     */
+    private class Cursor implements TokenSource {
+
+        private int index;
+
+        @Override
+        public TokenType type() {
+            return TokenBuffer.this.type(index);
+        }
+
+        @Override
+        public String literal() {
+            return TokenBuffer.this.literal(index);
+        }
+
+        @Override
+        public int lineNumber() {
+            return TokenBuffer.this.lineNumber(index);
+        }
+
+        @Override
+        public int column() {
+            return TokenBuffer.this.column(index);
+        }
+
+        @Override
+        public Token token() {
+            return TokenBuffer.this.token(index);
+        }
+
+        @Override
+        public void advance() {
+            if (index < size - 1) {
+                index++;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.Token;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+/**
+ * A cursor over a sequence of tokens, which the {@link Parser} pulls from one token
+ * at a time. Once the end of file is reached, the cursor stays on the EOF token.
+ */
+public interface TokenSource extends AutoCloseable {
+
+    /**
+     * @return the type of the current token
+     */
+    TokenType type();
+
+    /**
+     * @return the String the current token represents
+     */
+    String literal();
+
+    /**
+     * @return the line number the current token was derived from
+     */
+    int lineNumber();
+
+    /**
+     * @return the column the current token starts at, starting from 1
+     */
+    int column();
+
+    /**
+     * @return the current token as a Token object
+     */
+    Token token();
+
+    /**
+     * Moves the cursor to the next token, unless the current token is EOF.
+     */
+    void advance();
+
+    /**
+     * Releases anything held open by this source. Does nothing by default.
+     */
+    @Override
+    default void close() {
+    }
+}
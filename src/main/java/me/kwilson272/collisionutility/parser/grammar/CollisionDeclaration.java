@@ -4,12 +4,15 @@ import me.kwilson272.collisionutility.parser.token.Token;
 
 /**
  * Representation of the collision_declaration grammar non-terminal.
- * Ex: AirBlast > FireBlast
+ * Ex: AirBlast > FireBlast priority 5 every 2
  *
  * @param leftOperand the Operand on the left of the operator
  * @param operator the Token containing the operator
  * @param rightOperand the Operand on the right of the operator
+ * @param priority how early the collision is checked when checks run out of time,
+ *                 higher is earlier, 0 if no priority was declared
+ * @param interval the number of ticks between checks of the collision, 1 if no interval
+ *                 was declared
  */
-public record CollisionDeclaration(Operand leftOperand, Token operator, Operand rightOperand) implements Expression  {}
-
-
+public record CollisionDeclaration(Operand leftOperand, Token operator, Operand rightOperand,
+                                   int priority, int interval) implements Expression  {}
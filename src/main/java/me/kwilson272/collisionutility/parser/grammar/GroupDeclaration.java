@@ -8,5 +8,9 @@ import java.util.List;
  *
  * @param groupName the Name of the group in the declaration
  * @param operands a List of the Operands declared as part of the group
+ * @param lineNumber the line number the group was declared on
+ * @param column the column the group's name starts at
+ * @param source the name of the file the group was declared in, or null if it is unknown
  */
-public record GroupDeclaration(String groupName, List<Operand> operands) implements Expression {}
+public record GroupDeclaration(String groupName, List<Operand> operands, int lineNumber, int column,
+                               String source) implements Expression {}
@@ -0,0 +1,11 @@
+package me.kwilson272.collisionutility.parser.grammar;
+
+/**
+ * Representation of the include_declaration grammar non-terminal.
+ * Ex: include "fire/shields.txt"
+ *
+ * @param path the path of the included file, relative to the collisions directory
+ * @param lineNumber the line number the include was declared on
+ * @param column the column the include starts at
+ */
+public record IncludeDeclaration(String path, int lineNumber, int column) implements Expression {}
@@ -5,7 +5,10 @@ package me.kwilson272.collisionutility.parser.grammar;
  *
  * @param isGroupReference true if the operand is a group reference,
  *                        false if it is a regular ability
+ * @param isSelector true if the operand selects abilities by element or type, such as @Fire
  * @param literal the String literal underlying the operand
  * @param lineNumber the line number the literal was declared on
+ * @param column the column the operand starts at
+ * @param source the name of the file the operand was declared in, or null if it is unknown
  */
-public record Operand(boolean isGroupReference, String literal, int lineNumber) {}
+public record Operand(boolean isGroupReference, boolean isSelector, String literal, int lineNumber, int column, String source) {}
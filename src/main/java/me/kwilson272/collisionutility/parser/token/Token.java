@@ -5,5 +5,6 @@ package me.kwilson272.collisionutility.parser.token;
  * @param type the TokenType defining this object
  * @param literal the String this token represents
  * @param lineNumber the Line number this token was derived from
+ * @param column the column of the line the token starts at, starting from 1
  */
-public record Token(TokenType type, String literal, int lineNumber) {}
+public record Token(TokenType type, String literal, int lineNumber, int column) {}
@@ -0,0 +1,136 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollisionCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final AbilitySymbolTable symbols = createSymbols("AirSwipe", "FireBlast", "FireKick");
+
+    @Test
+    void readsBackWhatWasWritten() {
+        CollisionCache cache = createCache();
+        byte[] key = key("FireBlast > AirSwipe");
+        Diagnostic warning = new Diagnostic(Diagnostic.Severity.WARNING, null, 4, 2, "the name of an ability",
+                "\"Firekick\"", List.of("FireKick"));
+        RuleFinding finding = new RuleFinding(RuleFinding.Kind.EMPTY, "fire.txt", 7, 0,
+                "Line 7 of fire.txt does not declare any pairs");
+        cache.write(key, new CollisionCache.Entry(createTable(), List.of(warning), List.of(finding), 1), symbols);
+
+        CollisionCache.Entry entry = cache.read(key, symbols);
+        assertNotNull(entry);
+        CollisionRule rule = entry.table().getRule(CollisionTable.pairKey(id("FireBlast"), id("AirSwipe")));
+        assertEquals(new CollisionRule(id("FireBlast"), TokenType.GREATER_THAN, id("AirSwipe"), "collisions.txt",
+                3, 2, 4), rule);
+        assertEquals(1, entry.table().getRules().size());
+        assertTrue(entry.table().getRemovals().contains(CollisionTable.pairKey(id("FireKick"), id("AirSwipe"))));
+        assertEquals(List.of(warning), entry.diagnostics());
+        assertEquals(List.of(finding), entry.findings());
+        assertEquals(1, entry.droppedDeclarations());
+    }
+
+    @Test
+    void writesDoNotLeaveTempFilesBehind() throws IOException {
+        CollisionCache cache = createCache();
+        cache.write(key("FireBlast > AirSwipe"), emptyEntry(), symbols);
+        cache.write(key("FireBlast < AirSwipe"), emptyEntry(), symbols);
+
+        try (Stream<Path> files = Files.list(cachePath().getParent())) {
+            assertEquals(List.of(cachePath()), files.toList());
+        }
+    }
+
+    @Test
+    void ignoresACacheWrittenForOtherInputs() {
+        CollisionCache cache = createCache();
+        cache.write(key("FireBlast > AirSwipe"), emptyEntry(), symbols);
+
+        assertNull(cache.read(key("FireBlast < AirSwipe"), symbols));
+    }
+
+    @Test
+    void ignoresACacheWrittenByAnotherVersion() throws IOException {
+        CollisionCache cache = createCache();
+        byte[] key = key("FireBlast > AirSwipe");
+        cache.write(key, emptyEntry(), symbols);
+
+        // The version follows the magic number
+        byte[] bytes = Files.readAllBytes(cachePath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(Integer.BYTES, buffer.getInt(Integer.BYTES) - 1);
+        Files.write(cachePath(), bytes);
+
+        assertNull(cache.read(key, symbols));
+    }
+
+    @Test
+    void ignoresACacheNamingUnknownAbilities() {
+        CollisionCache cache = createCache();
+        byte[] key = key("FireBlast > AirSwipe");
+        cache.write(key, new CollisionCache.Entry(createTable(), List.of(), List.of(), 0), symbols);
+
+        assertNull(cache.read(key, createSymbols("AirSwipe", "FireBlast")));
+    }
+
+    @Test
+    void missingCacheIsIgnored() {
+        assertNull(createCache().read(key("FireBlast > AirSwipe"), symbols));
+    }
+
+    private CollisionCache createCache() {
+        return new CollisionCache(cachePath(), Logger.getAnonymousLogger());
+    }
+
+    private Path cachePath() {
+        return directory.resolve("cache").resolve("collisions.bin");
+    }
+
+    private byte[] key(String source) {
+        return CollisionCache.key(Map.of("collisions.txt", source.getBytes(StandardCharsets.UTF_8)), "", symbols);
+    }
+
+    private CollisionTable createTable() {
+        CollisionTable table = new CollisionTable();
+        table.put(new CollisionRule(id("FireBlast"), TokenType.GREATER_THAN, id("AirSwipe"), "collisions.txt",
+                3, 2, 4));
+        table.put(new CollisionRule(id("FireKick"), TokenType.X, id("AirSwipe"), "collisions.txt", 5, 0, 1));
+        return table;
+    }
+
+    private CollisionCache.Entry emptyEntry() {
+        return new CollisionCache.Entry(new CollisionTable(), List.of(), List.of(), 0);
+    }
+
+    private int id(String name) {
+        return symbols.resolve(name);
+    }
+
+    private static AbilitySymbolTable createSymbols(String... names) {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(false);
+        for (String name : names) {
+            builder.addAbility(name);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,214 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.Diagnostic;
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.Parser;
+import me.kwilson272.collisionutility.parser.TokenSource;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollisionCompilerTest {
+
+    // The abilities named by the shipped collisions file. Abilities that can only be
+    // reached through an alias get the last ids, the same as AbilityLookup gives them
+    private static final List<String> NAMES = List.of("AirShield", "AirSpout", "AirSweep", "AirSwipe",
+            "EarthBlast", "EarthSmash", "FireBlast", "FireKick", "FireShield", "FireSpin", "FireWheel", "IceBlast",
+            "WaterManipulation", "WaterSpout");
+    private static final List<String> ALIASED = List.of("FireBlastCharged", "IceSpikeBlast");
+
+    @TempDir
+    Path directory;
+
+    private final AbilitySymbolTable symbols = createSymbols();
+    private CollisionCompiler compiler;
+
+    @Test
+    void lastDeclarationOfAPairWins() throws IOException {
+        CollisionTable table = compile(
+                "FireBlast > AirSwipe",
+                "AirSwipe > FireBlast");
+
+        assertEquals(1, table.getRules().size());
+        assertEquals("AirSwipe > FireBlast", describe(table, "FireBlast", "AirSwipe"));
+    }
+
+    @Test
+    void cancelRemovesEarlierDeclarations() throws IOException {
+        CollisionTable table = compile(
+                "FireBlast > AirSwipe",
+                "AirSwipe x FireBlast");
+
+        assertNull(rule(table, "FireBlast", "AirSwipe"));
+        assertTrue(table.getRemovals().contains(pairKey("FireBlast", "AirSwipe")));
+    }
+
+    @Test
+    void declarationAfterCancelRestoresThePair() throws IOException {
+        CollisionTable table = compile(
+                "FireBlast x AirSwipe",
+                "FireBlast = AirSwipe");
+
+        assertEquals("FireBlast = AirSwipe", describe(table, "FireBlast", "AirSwipe"));
+    }
+
+    @Test
+    void pairsNamedInBothOrdersKeepTheOrderTheyAreListedIn() throws IOException {
+        // Listed against both id and alphabetical order
+        CollisionTable table = compile(
+                "Group \"Large\" {FireKick, FireBlastCharged, AirSweep}",
+                "$Large > $Large");
+
+        assertEquals("FireKick > FireBlastCharged", describe(table, "FireKick", "FireBlastCharged"));
+        assertEquals("FireKick > AirSweep", describe(table, "FireKick", "AirSweep"));
+        assertEquals("FireBlastCharged > AirSweep", describe(table, "FireBlastCharged", "AirSweep"));
+    }
+
+    @Test
+    void pairsWithoutSharedAbilitiesKeepTheirOrder() throws IOException {
+        CollisionTable table = compile("Group \"Fire\" {FireKick, FireSpin}", "AirSweep < $Fire");
+
+        assertEquals("AirSweep < FireKick", describe(table, "FireKick", "AirSweep"));
+        assertEquals("AirSweep < FireSpin", describe(table, "FireSpin", "AirSweep"));
+    }
+
+    @Test
+    void shippedFileMatchesTheOriginalLoader() throws IOException {
+        try (InputStream shipped = getClass().getResourceAsStream("/collisions.txt")) {
+            assertNotNull(shipped, "collisions.txt is not on the classpath");
+            Files.copy(shipped, directory.resolve("collisions.txt"));
+        }
+        CollisionTable table = compile(directory.resolve("collisions.txt"));
+
+        // $LargeAbilities > $LargeAbilities, in the order the group lists them
+        assertEquals("AirSweep > EarthSmash", describe(table, "AirSweep", "EarthSmash"));
+        assertEquals("FireBlastCharged > FireKick", describe(table, "FireKick", "FireBlastCharged"));
+        assertEquals("FireBlastCharged > FireWheel", describe(table, "FireWheel", "FireBlastCharged"));
+        assertEquals("FireKick > FireSpin", describe(table, "FireSpin", "FireKick"));
+        // Cancelled further down
+        assertNull(rule(table, "FireSpin", "FireBlastCharged"));
+        assertNull(rule(table, "WaterManipulation", "WaterManipulation"));
+        assertEquals("FireShield > AirSwipe", describe(table, "AirSwipe", "FireShield"));
+    }
+
+    @Test
+    void groupsCanBeReferencedBeforeTheyAreDeclared() throws IOException {
+        CollisionTable table = compile(
+                "$Fire > AirSwipe",
+                "Group \"Fire\" {$Kicks, FireSpin}",
+                "Group \"Kicks\" {FireKick}");
+
+        assertEquals("FireKick > AirSwipe", describe(table, "FireKick", "AirSwipe"));
+        assertEquals("FireSpin > AirSwipe", describe(table, "FireSpin", "AirSwipe"));
+        assertEquals(List.of(), compiler.getDiagnostics());
+    }
+
+    @Test
+    void groupReferencingItselfIsReported() throws IOException {
+        CollisionTable table = compile(
+                "Group \"A\" {FireKick, $B}",
+                "Group \"B\" {FireSpin, $A}",
+                "$A > AirSwipe");
+
+        assertEquals("FireKick > AirSwipe", describe(table, "FireKick", "AirSwipe"));
+        assertEquals("FireSpin > AirSwipe", describe(table, "FireSpin", "AirSwipe"));
+        assertEquals(1, compiler.getDiagnostics().size());
+        Diagnostic cycle = compiler.getDiagnostics().get(0);
+        assertEquals(Diagnostic.Severity.WARNING, cycle.severity());
+        assertEquals("A -> B -> A", cycle.found());
+        assertEquals(2, cycle.lineNumber());
+    }
+
+    @Test
+    void unknownNamesAreReportedWithSuggestions() throws IOException {
+        CollisionTable table = compile(
+                "Group \"Fire\" {FireKick}",
+                "$Fires > FireKik");
+
+        assertTrue(table.getRules().isEmpty());
+        List<Diagnostic> diagnostics = compiler.getDiagnostics();
+        assertEquals(2, diagnostics.size());
+        assertEquals("\"$Fires\"", diagnostics.get(0).found());
+        assertEquals(List.of("Fire"), diagnostics.get(0).suggestions());
+        assertEquals("\"FireKik\"", diagnostics.get(1).found());
+        assertTrue(diagnostics.get(1).suggestions().contains("FireKick"));
+    }
+
+    @Test
+    void lastDeclarationOfAGroupIsUsed() throws IOException {
+        CollisionTable table = compile(
+                "Group \"Fire\" {FireKick}",
+                "Group \"Fire\" {FireSpin}",
+                "$Fire > AirSwipe");
+
+        assertNull(rule(table, "FireKick", "AirSwipe"));
+        assertEquals("FireSpin > AirSwipe", describe(table, "FireSpin", "AirSwipe"));
+        assertEquals(1, compiler.getDiagnostics().size());
+    }
+
+    private CollisionTable compile(String... lines) throws IOException {
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, List.of(lines));
+        return compile(file);
+    }
+
+    private CollisionTable compile(Path file) {
+        List<Expression> expressions;
+        try (TokenSource tokens = new Lexer(file.toFile(), Logger.getAnonymousLogger()).stream()) {
+            expressions = new Parser(tokens, "collisions.txt").parseExpressions();
+        }
+        compiler = new CollisionCompiler(symbols);
+        return compiler.compile(expressions);
+    }
+
+    private CollisionRule rule(CollisionTable table, String first, String second) {
+        return table.getRule(pairKey(first, second));
+    }
+
+    private long pairKey(String first, String second) {
+        int firstId = symbols.resolve(first);
+        int secondId = symbols.resolve(second);
+        assertFalse(firstId == AbilitySymbolTable.UNKNOWN || secondId == AbilitySymbolTable.UNKNOWN);
+        return CollisionTable.pairKey(firstId, secondId);
+    }
+
+    /**
+     * @return the rule for the pair the way it would be declared, such as {@code FireBlast > AirSwipe}
+     */
+    private String describe(CollisionTable table, String first, String second) {
+        CollisionRule rule = rule(table, first, second);
+        assertNotNull(rule, first + " and " + second + " don't collide");
+        String operator = switch (rule.operator()) {
+            case GREATER_THAN -> ">";
+            case LESS_THAN -> "<";
+            case EQUAL -> "=";
+            default -> "~";
+        };
+        return symbols.getName(rule.first()) + " " + operator + " " + symbols.getName(rule.second());
+    }
+
+    private static AbilitySymbolTable createSymbols() {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(false);
+        for (String name : NAMES) {
+            builder.addAbility(name);
+        }
+        for (String alias : ALIASED) {
+            builder.addAlias(alias, builder.addAbility(alias));
+        }
+        return builder.build();
+    }
+}
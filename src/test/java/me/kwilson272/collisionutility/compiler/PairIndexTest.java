@@ -0,0 +1,85 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PairIndexTest {
+
+    private static final int COLLIDES = PairIndex.COLLIDES;
+    private static final int REMOVES_FIRST = PairIndex.REMOVES_FIRST;
+    private static final int REMOVES_SECOND = PairIndex.REMOVES_SECOND;
+
+    @Test
+    void outcomeFollowsTheOrderOfTheLookup() {
+        PairIndex index = PairIndex.builder().add(7, 2, false, true).build();
+
+        assertEquals(COLLIDES | REMOVES_SECOND, index.outcome(7, 2));
+        assertEquals(COLLIDES | REMOVES_FIRST, index.outcome(2, 7));
+    }
+
+    @Test
+    void pairsThatDontCollideHaveNoOutcome() {
+        PairIndex index = PairIndex.builder().add(1, 2, true, true).build();
+
+        assertEquals(0, index.outcome(1, 3));
+        assertEquals(0, index.outcome(-1, 2));
+        assertEquals(0, PairIndex.empty().outcome(1, 2));
+        assertEquals(0, PairIndex.empty().size());
+    }
+
+    @Test
+    void pairsAddedTwiceCombineTheirOutcomes() {
+        PairIndex index = PairIndex.builder().add(1, 2, true, false).add(2, 1, true, false).build();
+
+        assertEquals(COLLIDES | REMOVES_FIRST | REMOVES_SECOND, index.outcome(1, 2));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void abilityCollidingWithItselfIsRemovedEitherWay() {
+        PairIndex index = PairIndex.builder().add(4, 4, false, true).build();
+
+        assertEquals(COLLIDES | REMOVES_FIRST | REMOVES_SECOND, index.outcome(4, 4));
+    }
+
+    @Test
+    void everyPairOfALargeIndexIsFound() {
+        PairIndex.Builder builder = PairIndex.builder();
+        for (int first = 0; first < 100; first++) {
+            for (int second = first + 1; second < 100; second += 3) {
+                builder.add(first, second, (first + second) % 2 == 0, false);
+            }
+        }
+        PairIndex index = builder.build();
+
+        for (int first = 0; first < 100; first++) {
+            for (int second = first + 1; second < 100; second++) {
+                int expected = (second - first - 1) % 3 != 0 ? 0
+                        : COLLIDES | ((first + second) % 2 == 0 ? REMOVES_FIRST : 0);
+                assertEquals(expected, index.outcome(first, second), first + " and " + second);
+            }
+        }
+    }
+
+    @Test
+    void indexOfATableUsesItsRules() {
+        CollisionTable table = new CollisionTable();
+        table.put(new CollisionRule(3, TokenType.LESS_THAN, 5, null, 1, 0, 1));
+        table.put(new CollisionRule(3, TokenType.TILDE, 6, null, 2, 0, 1));
+        table.put(new CollisionRule(6, TokenType.X, 3, null, 3, 0, 1));
+        PairIndex index = PairIndex.of(table);
+
+        assertEquals(COLLIDES | REMOVES_FIRST, index.outcome(3, 5));
+        assertEquals(0, index.outcome(3, 6));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void negativeIdsCantBeAdded() {
+        assertThrows(IllegalArgumentException.class, () -> PairIndex.builder().add(-1, 2, false, false));
+    }
+}
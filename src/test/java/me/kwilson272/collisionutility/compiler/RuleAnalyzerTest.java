@@ -0,0 +1,134 @@
+package me.kwilson272.collisionutility.compiler;
+
+import me.kwilson272.collisionutility.parser.Lexer;
+import me.kwilson272.collisionutility.parser.Parser;
+import me.kwilson272.collisionutility.parser.TokenSource;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleAnalyzerTest {
+
+    private static final List<String> NAMES = List.of("AirShield", "AirSpout", "AirSweep", "AirSwipe",
+            "EarthBlast", "EarthSmash", "FireBlast", "FireBlastCharged", "FireKick", "FireShield", "FireSpin",
+            "FireWheel", "IceBlast", "IceSpikeBlast", "WaterManipulation", "WaterSpout");
+
+    @TempDir
+    Path directory;
+
+    private final AbilitySymbolTable symbols = createSymbols();
+    private CollisionCompiler compiler;
+
+    @Test
+    void declarationsRedeclaredLaterAreShadowed() throws IOException {
+        compile(false,
+                "FireBlast > AirSwipe",
+                "AirSwipe > FireBlast");
+
+        assertEquals(List.of(new RuleFinding(RuleFinding.Kind.SHADOWED, "collisions.txt", 1, 1,
+                "Every pair on line 1 of collisions.txt is declared again later, so the line has no effect")),
+                compiler.getFindings());
+    }
+
+    @Test
+    void cancelsAreOnlyShadowedByLaterCancels() throws IOException {
+        compile(false,
+                "FireBlast x AirSwipe",
+                "FireBlast > AirSwipe");
+        assertEquals(List.of(), compiler.getFindings());
+
+        compile(false,
+                "FireBlast x AirSwipe",
+                "AirSwipe x FireBlast");
+        assertEquals(List.of(RuleFinding.Kind.SHADOWED), kinds());
+        assertEquals(1, compiler.getFindings().get(0).lineNumber());
+    }
+
+    @Test
+    void declarationsWithoutPairsAreEmpty() throws IOException {
+        compile(false,
+                "Group \"None\" {}",
+                "$None > AirSwipe");
+
+        assertEquals(List.of(RuleFinding.Kind.EMPTY), kinds());
+        assertEquals(2, compiler.getFindings().get(0).lineNumber());
+    }
+
+    @Test
+    void sharedAbilitiesAreReported() throws IOException {
+        compile(false,
+                "Group \"Fire\" {FireKick, FireSpin, FireWheel}",
+                "$Fire = $Fire");
+        assertEquals(List.of(RuleFinding.Kind.DUPLICATE_PAIRS), kinds());
+        assertEquals(3, compiler.getFindings().get(0).pairs());
+
+        compile(false,
+                "Group \"Fire\" {FireKick, FireSpin, FireWheel}",
+                "$Fire > $Fire");
+        assertEquals(List.of(RuleFinding.Kind.CONFLICTING_PAIRS), kinds());
+        assertEquals(3, compiler.getFindings().get(0).pairs());
+    }
+
+    @Test
+    void droppingRedundantDeclarationsKeepsTheTable() throws IOException {
+        byte[] shipped;
+        try (InputStream stream = getClass().getResourceAsStream("/collisions.txt")) {
+            assertNotNull(stream, "collisions.txt is not on the classpath");
+            shipped = stream.readAllBytes();
+        }
+        // Every declaration of the first copy is declared again by the second
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, shipped);
+        Files.write(file, shipped, StandardOpenOption.APPEND);
+        CollisionTable expected = compile(file, false);
+        CollisionTable table = compile(file, true);
+
+        assertEquals(compiler.getFindings().stream().filter(finding -> finding.kind() == RuleFinding.Kind.SHADOWED)
+                .count(), compiler.getDroppedDeclarations());
+        assertTrue(compiler.getDroppedDeclarations() > 0);
+        assertEquals(new HashSet<>(expected.getRules()), new HashSet<>(table.getRules()));
+        assertEquals(expected.getRemovals(), table.getRemovals());
+    }
+
+    private List<RuleFinding.Kind> kinds() {
+        return compiler.getFindings().stream().map(RuleFinding::kind).toList();
+    }
+
+    private CollisionTable compile(boolean dropRedundant, String... lines) throws IOException {
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, List.of(lines));
+        return compile(file, dropRedundant);
+    }
+
+    private CollisionTable compile(Path file, boolean dropRedundant) {
+        List<Expression> expressions;
+        try (TokenSource tokens = new Lexer(file.toFile(), Logger.getAnonymousLogger()).stream()) {
+            expressions = new Parser(tokens, "collisions.txt").parseExpressions();
+        }
+        compiler = new CollisionCompiler(symbols);
+        compiler.enableAnalysis(dropRedundant);
+        return compiler.compile(expressions);
+    }
+
+    private static AbilitySymbolTable createSymbols() {
+        AbilitySymbolTable.Builder builder = AbilitySymbolTable.builder(false);
+        for (String name : NAMES) {
+            builder.addAbility(name);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,69 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.Token;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactLexerTest {
+
+    private static final Logger LOGGER = LexerTest.quietLogger();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void producesTheSameTokensAsTheLexer() throws IOException {
+        File file = write(
+                "# -- Groups --",
+                "Group \"Basic\" {AirSwipe, FireBlast,WaterManipulation}",
+                "",
+                "  $Basic = $Basic every 4 priority -1  ",
+                "FireBlast x AirSwipe # Cancelled",
+                "@Fire ~ @Air",
+                "include \"fire/extra.txt\"",
+                "Group \"Unclosed\" {AirSwipe,");
+
+        assertEquals(new Lexer(file, LOGGER).readTokens(), tokens(new CompactLexer(file, LOGGER).readTokens()));
+    }
+
+    @Test
+    void handlesWindowsLineEndingsAndNoFinalLineBreak() throws IOException {
+        Path path = directory.resolve("collisions.txt");
+        Files.writeString(path, "FireBlast > AirSwipe\r\nAirSwipe < FireBlast");
+
+        assertEquals(new Lexer(path.toFile(), LOGGER).readTokens(),
+                tokens(new CompactLexer(path.toFile(), LOGGER).readTokens()));
+    }
+
+    @Test
+    void unreadableFileMatchesTheLexer() {
+        File file = directory.resolve("missing.txt").toFile();
+
+        assertEquals(new Lexer(file, LOGGER).readTokens(), tokens(new CompactLexer(file, LOGGER).readTokens()));
+    }
+
+    private File write(String... lines) throws IOException {
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, List.of(lines));
+        return file.toFile();
+    }
+
+    private static List<Token> tokens(TokenBuffer buffer) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.token(i));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,100 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.token.Token;
+import me.kwilson272.collisionutility.parser.token.TokenType;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LexerTest {
+
+    private static final Logger LOGGER = quietLogger();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tokenizesADeclaration() throws IOException {
+        List<Token> tokens = new Lexer(write("FireBlast > $Basic priority 2"), LOGGER).readTokens();
+
+        // The lexer starts on an empty line 0
+        assertEquals(List.of(
+                new Token(TokenType.EOL, "", 0, 1),
+                new Token(TokenType.STRING_LIT, "FireBlast", 1, 1),
+                new Token(TokenType.GREATER_THAN, ">", 1, 11),
+                new Token(TokenType.DOLLAR_SIGN, "$", 1, 13),
+                new Token(TokenType.STRING_LIT, "Basic", 1, 14),
+                new Token(TokenType.KEY_PRIORITY, "priority", 1, 20),
+                new Token(TokenType.STRING_LIT, "2", 1, 29),
+                new Token(TokenType.EOL, "", 1, 30),
+                new Token(TokenType.EOF, "", 2, 1)), tokens);
+    }
+
+    @Test
+    void commentsEndTheLine() throws IOException {
+        List<Token> tokens = new Lexer(write("AirSwipe # FireBlast > AirSwipe", "FireBlast"), LOGGER).readTokens();
+
+        assertEquals(List.of(TokenType.EOL, TokenType.STRING_LIT, TokenType.POUND, TokenType.EOL,
+                TokenType.STRING_LIT, TokenType.EOL, TokenType.EOF), types(tokens));
+        assertEquals(2, tokens.get(4).lineNumber());
+    }
+
+    @Test
+    void streamMatchesReadTokens() throws IOException {
+        File file = write("Group \"Basic\" {AirSwipe, FireBlast}", "", "$Basic = $Basic every 4", "FireBlast x AirSwipe");
+        List<Token> streamed = new ArrayList<>();
+        try (TokenSource tokens = new Lexer(file, LOGGER).stream()) {
+            streamed.add(tokens.token());
+            while (tokens.type() != TokenType.EOF) {
+                tokens.advance();
+                streamed.add(tokens.token());
+            }
+        }
+
+        assertEquals(new Lexer(file, LOGGER).readTokens(), streamed);
+    }
+
+    @Test
+    void unreadableFileEndsWithEof() {
+        List<Token> tokens = new Lexer(directory.resolve("missing.txt").toFile(), LOGGER).readTokens();
+
+        assertEquals(List.of(TokenType.EOF), types(tokens));
+    }
+
+    @Test
+    void lexerCanOnlyBeReadOnce() throws IOException {
+        Lexer lexer = new Lexer(write("FireBlast > AirSwipe"), LOGGER);
+        lexer.readTokens();
+
+        assertThrows(IllegalStateException.class, lexer::stream);
+    }
+
+    private File write(String... lines) throws IOException {
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, List.of(lines));
+        return file.toFile();
+    }
+
+    static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    private static List<TokenType> types(List<Token> tokens) {
+        return tokens.stream().map(Token::type).toList();
+    }
+}
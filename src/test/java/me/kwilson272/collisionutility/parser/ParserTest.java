@@ -0,0 +1,108 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+import me.kwilson272.collisionutility.parser.grammar.GroupDeclaration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parsesDeclarationsWithModifiers() throws IOException {
+        Parser parser = parse(
+                "Group \"Fire\" {FireKick, $Large, @Fire}",
+                "$Fire > AirSwipe priority -2 every 3");
+        List<Expression> expressions = parser.parseExpressions();
+
+        GroupDeclaration group = (GroupDeclaration) expressions.get(1);
+        assertEquals("Fire", group.groupName());
+        assertEquals(3, group.operands().size());
+        assertTrue(group.operands().get(1).isGroupReference());
+        assertTrue(group.operands().get(2).isSelector());
+        CollisionDeclaration collision = (CollisionDeclaration) expressions.get(2);
+        assertEquals(-2, collision.priority());
+        assertEquals(3, collision.interval());
+        assertEquals("collisions.txt", collision.leftOperand().source());
+        assertEquals(List.of(), parser.getDiagnostics());
+    }
+
+    @Test
+    void badLineIsReportedAndSkipped() throws IOException {
+        Parser parser = parse(
+                "FireBlast AirSwipe",
+                "FireBlast > AirSwipe");
+        List<Expression> expressions = parser.parseExpressions();
+
+        assertEquals(1, expressions.stream().filter(CollisionDeclaration.class::isInstance).count());
+        assertEquals(1, parser.getErrorCount());
+        assertEquals(1, parser.getDiagnostics().size());
+        assertEquals("collisions.txt:1:11: error: expected an operator: >, <, =, ~, or x, found \"AirSwipe\"",
+                parser.getDiagnostics().get(0).message());
+    }
+
+    @Test
+    void misspelledKeywordsAreSuggested() throws IOException {
+        Parser parser = parse(
+                "grop \"Fire\" {FireKick}",
+                "FireBlast > AirSwipe prority 2");
+        parser.parseExpressions();
+
+        List<Diagnostic> diagnostics = parser.getDiagnostics();
+        assertEquals(2, diagnostics.size());
+        assertEquals(List.of("group"), diagnostics.get(0).suggestions());
+        assertEquals(List.of("priority"), diagnostics.get(1).suggestions());
+    }
+
+    @Test
+    void invalidModifiersAreReported() throws IOException {
+        Parser parser = parse(
+                "FireBlast > AirSwipe every 0",
+                "FireBlast > AirSwipe priority 99999999999",
+                "FireBlast > AirSwipe priority 1 priority 2");
+        List<Expression> expressions = parser.parseExpressions();
+
+        assertEquals(0, expressions.stream().filter(CollisionDeclaration.class::isInstance).count());
+        assertEquals(3, parser.getErrorCount());
+        List<Diagnostic> diagnostics = parser.getDiagnostics();
+        assertEquals("\"0\"", diagnostics.get(0).found());
+        assertEquals(28, diagnostics.get(0).column());
+        assertEquals("\"99999999999\"", diagnostics.get(1).found());
+        assertEquals("a single priority per collision declaration", diagnostics.get(2).expected());
+    }
+
+    @Test
+    void everyLineOfABrokenFileIsRecovered() throws IOException {
+        Parser parser = parse(
+                "Group \"Fire\" {FireKick,",
+                "Group Fire {FireKick}",
+                "> AirSwipe",
+                "include fire.txt",
+                "$Fire >",
+                "FireBlast > AirSwipe");
+        List<Expression> expressions = parser.parseExpressions();
+
+        assertEquals(5, parser.getErrorCount());
+        assertEquals(5, parser.getDiagnostics().size());
+        CollisionDeclaration last = (CollisionDeclaration) expressions.get(expressions.size() - 1);
+        assertEquals(6, last.operator().lineNumber());
+    }
+
+    private Parser parse(String... lines) throws IOException {
+        Path file = directory.resolve("collisions.txt");
+        Files.write(file, List.of(lines));
+        return new Parser(new Lexer(file.toFile(), LexerTest.quietLogger()).stream(), "collisions.txt");
+    }
+}
@@ -0,0 +1,115 @@
+package me.kwilson272.collisionutility.parser;
+
+import me.kwilson272.collisionutility.parser.grammar.CollisionDeclaration;
+import me.kwilson272.collisionutility.parser.grammar.Expression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RuleFileReaderTest {
+
+    private static final Logger LOGGER = LexerTest.quietLogger();
+
+    @TempDir
+    Path root;
+
+    @Test
+    void directoryFilesFollowTheCollisionsFileInPathOrder() throws IOException {
+        write("collisions.txt", "Main > A");
+        write("collisions/water.txt", "Water > A");
+        write("collisions/air/air.txt", "Air > A");
+        write("collisions/notes.md", "Notes > A");
+
+        RuleFileReader.Result result = read(1);
+
+        assertEquals(List.of("collisions.txt:Main", "collisions/air/air.txt:Air", "collisions/water.txt:Water"),
+                declarations(result));
+        assertEquals(3, result.fileCount());
+    }
+
+    @Test
+    void includesAreMergedWhereTheyAreDeclaredAndOnlyOnce() throws IOException {
+        write("collisions.txt", "First > A", "include \"b.txt\"", "Last > A", "include \"b.txt\"");
+        write("collisions/a.txt", "FromA > A");
+        write("collisions/b.txt", "FromB > A", "include \"c.txt\"");
+        write("collisions/c.txt", "FromC > A");
+
+        assertEquals(List.of("collisions.txt:First", "collisions/b.txt:FromB", "collisions/c.txt:FromC",
+                "collisions.txt:Last", "collisions/a.txt:FromA"), declarations(read(1)));
+    }
+
+    @Test
+    void parallelReadsMergeInTheSameOrder() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            write("collisions/file" + i + ".txt", "File" + i + " > A");
+            if (i % 3 == 0) {
+                lines.add("include \"file" + i + ".txt\"");
+            }
+        }
+        write("collisions.txt", lines.toArray(new String[0]));
+
+        assertEquals(declarations(read(1)), declarations(read(4)));
+    }
+
+    @Test
+    void includesOutsideTheDirectoryAreErrors() throws IOException {
+        write("collisions.txt", "include \"../collisions.txt\"", "include \"missing.txt\"", "Main > A");
+
+        RuleFileReader.Result result = read(1);
+
+        assertEquals(List.of("collisions.txt:Main"), declarations(result));
+        assertEquals(2, result.errorCount());
+        assertEquals(List.of(Diagnostic.Severity.ERROR, Diagnostic.Severity.ERROR),
+                result.diagnostics().stream().map(Diagnostic::severity).toList());
+    }
+
+    @Test
+    void includeCyclesAreReported() throws IOException {
+        write("collisions.txt", "include \"a.txt\"");
+        write("collisions/a.txt", "FromA > A", "include \"b.txt\"");
+        write("collisions/b.txt", "FromB > A", "include \"a.txt\"");
+
+        RuleFileReader.Result result = read(1);
+
+        assertEquals(List.of("collisions/a.txt:FromA", "collisions/b.txt:FromB"), declarations(result));
+        assertEquals(1, result.diagnostics().size());
+        Diagnostic cycle = result.diagnostics().get(0);
+        assertEquals(Diagnostic.Severity.WARNING, cycle.severity());
+        assertEquals("collisions/b.txt", cycle.source());
+        assertEquals(2, cycle.lineNumber());
+    }
+
+    private void write(String name, String... lines) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, List.of(lines));
+    }
+
+    private RuleFileReader.Result read(int threads) {
+        return new RuleFileReader(root.resolve("collisions.txt").toFile(), root.resolve("collisions").toFile(),
+                false, LOGGER).read(threads);
+    }
+
+    /**
+     * @return the file and left operand of every collision declaration, such as {@code collisions.txt:Main}
+     */
+    private static List<String> declarations(RuleFileReader.Result result) {
+        List<String> declarations = new ArrayList<>();
+        for (Expression expression : result.expressions()) {
+            if (expression instanceof CollisionDeclaration declaration) {
+                declarations.add(declaration.leftOperand().source() + ":" + declaration.leftOperand().literal());
+            }
+        }
+        return declarations;
+    }
+}